@@ -201,7 +201,13 @@ tasks.compileModuleInfo {
 
 tasks.jar {
   from(layout.buildDirectory.dir("mic"))
-  manifest { attributes("Multi-Release" to "True") }
+  manifest {
+    attributes(
+        "Main-Class" to "tools.aqua.turnkey.support.TurnKeyInspector",
+        "Multi-Release" to "True",
+        "Premain-Class" to "tools.aqua.turnkey.support.TurnKeyAgent",
+    )
+  }
 }
 
 val maven by
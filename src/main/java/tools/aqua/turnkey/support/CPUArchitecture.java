@@ -20,6 +20,8 @@ package tools.aqua.turnkey.support;
 
 import static java.lang.System.getProperty;
 
+import org.jspecify.annotations.Nullable;
+
 /** Supported CPU architectures. */
 enum CPUArchitecture {
   /** Intel/AMD 32 bit. */
@@ -75,4 +77,19 @@ enum CPUArchitecture {
         throw new UnsupportedPlatformException("Unsupported CPU architecture: " + osArch);
     }
   }
+
+  /**
+   * Find the CPU architecture with the given directory name.
+   *
+   * @param name the directory name, e.g., as used in a bundle layout.
+   * @return the matching CPU architecture or {@code null} if none matches.
+   */
+  static @Nullable CPUArchitecture fromName(final String name) {
+    for (final CPUArchitecture candidate : values()) {
+      if (candidate.name.equals(name)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.TimeUnit;
+
+/** A point in time after which a blocking operation should be aborted. */
+final class Deadline {
+  /** A deadline that never expires. */
+  static final Deadline NONE = new Deadline(0, Long.MAX_VALUE);
+
+  /** The start of the time span as given by {@link System#nanoTime()}. */
+  private final long start;
+
+  /** The length of the time span in nanoseconds, {@link Long#MAX_VALUE} for no limit. */
+  private final long timeoutNanos;
+
+  /**
+   * Create a new deadline.
+   *
+   * @param start the {@link #start}.
+   * @param timeoutNanos the {@link #timeoutNanos}.
+   */
+  private Deadline(final long start, final long timeoutNanos) {
+    this.start = start;
+    this.timeoutNanos = timeoutNanos;
+  }
+
+  /**
+   * Create a deadline that expires after the given time from now.
+   *
+   * @param timeout the time span.
+   * @param unit the unit of {@code timeout}.
+   * @return the deadline.
+   * @throws IllegalArgumentException if the timeout is negative.
+   */
+  static Deadline after(final long timeout, final TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout must not be negative");
+    }
+    return new Deadline(System.nanoTime(), unit.toNanos(timeout));
+  }
+
+  /**
+   * Check if this deadline can expire at all.
+   *
+   * @return {@code true} iff this deadline is finite.
+   */
+  boolean isBounded() {
+    return timeoutNanos != Long.MAX_VALUE;
+  }
+
+  /**
+   * Get the time remaining until this deadline expires.
+   *
+   * @return the remaining time in nanoseconds, at most zero if expired, {@link Long#MAX_VALUE} if
+   *     unbounded.
+   */
+  long remainingNanos() {
+    return isBounded() ? timeoutNanos - elapsedNanos() : Long.MAX_VALUE;
+  }
+
+  /**
+   * Check if this deadline has expired.
+   *
+   * @return {@code true} iff no time remains.
+   */
+  boolean isExpired() {
+    return remainingNanos() <= 0;
+  }
+
+  /**
+   * Get the time elapsed since this deadline was created.
+   *
+   * @return the elapsed time in nanoseconds.
+   */
+  long elapsedNanos() {
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Describe the time budget and its consumption for error messages.
+   *
+   * @return a description like {@code "deadline of 500 ms (612 ms elapsed)"}.
+   */
+  String describe() {
+    return "deadline of "
+        + NANOSECONDS.toMillis(timeoutNanos)
+        + " ms ("
+        + NANOSECONDS.toMillis(elapsedNanos())
+        + " ms elapsed)";
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static tools.aqua.turnkey.support.Utilities.deleteRecursively;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A TurnKey bundle for the current platform whose core libraries are being unpacked or have been
+ * unpacked.
+ */
+final class ExtractedBundle {
+  /** The resolved platform prefix of the bundle. */
+  final PlatformPrefix platformPrefix;
+
+  /** The bundle's metadata. */
+  final TurnKeyMetadata metadata;
+
+  /** The directory the bundle is unpacked to. */
+  final Path directory;
+
+  /** The extraction of the bundle's core libraries. */
+  final Extraction extraction;
+
+  /** The cache the bundle is unpacked through, or {@code null} if caching is disabled. */
+  final @Nullable ExtractionCache cache;
+
+  /** The names of the optional groups already loaded, guarded by this object's monitor. */
+  final Set<String> loadedGroups = new HashSet<>();
+
+  /**
+   * The files unpacked to {@link #directory} for the core libraries and the loaded optional groups,
+   * guarded by this object's monitor.
+   */
+  final Set<String> unpackedFiles;
+
+  /**
+   * Create a new bundle record.
+   *
+   * @param platformPrefix the {@link #platformPrefix}.
+   * @param metadata the {@link #metadata}.
+   * @param directory the {@link #directory}.
+   * @param extraction the {@link #extraction}.
+   * @param cache the {@link #cache}.
+   */
+  ExtractedBundle(
+      final PlatformPrefix platformPrefix,
+      final TurnKeyMetadata metadata,
+      final Path directory,
+      final Extraction extraction,
+      final @Nullable ExtractionCache cache) {
+    this.platformPrefix = platformPrefix;
+    this.metadata = metadata;
+    this.directory = directory;
+    this.extraction = extraction;
+    this.cache = cache;
+    this.unpackedFiles = new HashSet<>(metadata.bundledLibraries);
+  }
+
+  /**
+   * Cancel the extraction and delete the directory. Failures are ignored, since all files are
+   * scheduled for deletion on exit.
+   */
+  void abort() {
+    extraction.cancel();
+    if (cache != null) {
+      cache.discardLoadDirectory(directory);
+    } else {
+      try {
+        deleteRecursively(directory);
+      } catch (final IOException ignored) {
+        // scheduled for deletion on exit
+      }
+    }
+  }
+}
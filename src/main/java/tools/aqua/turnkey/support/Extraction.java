@@ -0,0 +1,364 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.newOutputStream;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A pipelined extraction of a set of files to a directory. Files are unpacked one after another in
+ * a background thread, in an order derived from the load commands. This permits loading a library
+ * as soon as it and its predecessors are present, while the remaining files are still being
+ * unpacked.
+ */
+// a cancellable worker thread, with progress guarded by a monitor that waiters block on
+@SuppressWarnings({
+  "PMD.AvoidSynchronizedStatement",
+  "PMD.AvoidUsingVolatile",
+  "PMD.DoNotUseThreads"
+})
+final class Extraction implements Runnable {
+  /** The resolved platform prefix to unpack from. */
+  private final PlatformPrefix platformPrefix;
+
+  /** The directory to unpack to. */
+  private final Path directory;
+
+  /** The files to unpack, in extraction order. */
+  private final List<String> files;
+
+  /** The function to use for loading resources. */
+  private final Function<String, @Nullable InputStream> getResourceAsStream;
+
+  /** The cache to unpack through, or {@code null} to write files directly. */
+  private final @Nullable ExtractionCache cache;
+
+  /** The lock guarding the progress fields. */
+  private final Object lock = new Object();
+
+  /** The number of files at the beginning of {@link #files} that are completely unpacked. */
+  private int extracted;
+
+  /** The failure that aborted the extraction, if any. */
+  private @Nullable TurnkeyException failure;
+
+  /** If the extraction has been cancelled. */
+  private volatile boolean cancelled;
+
+  /** The thread running the extraction, if started via {@link #start(String)}. */
+  private volatile @Nullable Thread worker;
+
+  /**
+   * Create a new extraction. It must be started explicitly using {@link #start(String)} or by
+   * calling {@link #run()}.
+   *
+   * @param platformPrefix the {@link #platformPrefix}.
+   * @param directory the {@link #directory}.
+   * @param bundledLibraries the files to unpack.
+   * @param loadCommands the load commands used to determine the extraction order.
+   * @param getResourceAsStream the {@link #getResourceAsStream}.
+   * @param cache the {@link #cache}. If given, the directory must have been created by it.
+   */
+  Extraction(
+      final PlatformPrefix platformPrefix,
+      final Path directory,
+      final Collection<String> bundledLibraries,
+      final List<String> loadCommands,
+      final Function<String, @Nullable InputStream> getResourceAsStream,
+      final @Nullable ExtractionCache cache) {
+    this.platformPrefix = platformPrefix;
+    this.directory = directory;
+    this.files = extractionOrder(bundledLibraries, loadCommands);
+    this.getResourceAsStream = getResourceAsStream;
+    this.cache = cache;
+  }
+
+  /**
+   * Compute the order in which files should be unpacked. Files not referenced by load commands come
+   * first, since they are usually dependencies found by the dynamic linker relative to the loaded
+   * libraries (e.g., via {@code $ORIGIN}); files referenced by load commands follow in load order.
+   *
+   * @param bundledLibraries the files to unpack.
+   * @param loadCommands the load commands.
+   * @return the files in extraction order.
+   */
+  static List<String> extractionOrder(
+      final Collection<String> bundledLibraries, final List<String> loadCommands) {
+    final Set<String> referenced = new LinkedHashSet<>();
+    for (final String library : loadCommands) {
+      if (bundledLibraries.contains(library)) {
+        referenced.add(library);
+      }
+    }
+    final List<String> order = new ArrayList<>();
+    for (final String library : bundledLibraries) {
+      if (!referenced.contains(library)) {
+        order.add(library);
+      }
+    }
+    order.addAll(referenced);
+    return order;
+  }
+
+  /**
+   * Start the extraction in a new daemon thread.
+   *
+   * @param name a name for the thread, usually the library prefix.
+   */
+  void start(final String name) {
+    final Thread thread = new Thread(this, "turnkey-unpack-" + name);
+    thread.setDaemon(true);
+    worker = thread;
+    thread.start();
+  }
+
+  /**
+   * Unpack all files in order. A failure is recorded and stops the extraction. If a cache is used,
+   * it is garbage-collected after a successful extraction. If the extraction is cancelled, all
+   * files written so far are deleted.
+   */
+  @Override
+  // the resource function is caller code, so any failure must be handed to the waiters
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  public void run() {
+    for (final String file : files) {
+      if (cancelled) {
+        deleteFiles();
+        return;
+      }
+      try {
+        if (cache == null) {
+          unpackFile(platformPrefix.resolve(file), directory.resolve(file), getResourceAsStream);
+        } else {
+          cache.unpack(platformPrefix.resolve(file), directory.resolve(file), getResourceAsStream);
+        }
+      } catch (final TurnkeyException e) {
+        fail(e);
+        if (cancelled) {
+          deleteFiles();
+        }
+        return;
+      } catch (final RuntimeException e) {
+        fail(new TurnkeyException("Failed to unpack " + platformPrefix.resolve(file), e));
+        if (cancelled) {
+          deleteFiles();
+        }
+        return;
+      }
+      synchronized (lock) {
+        extracted++;
+        lock.notifyAll();
+      }
+    }
+    if (cancelled) {
+      deleteFiles();
+    } else if (cache != null) {
+      cache.collectGarbage();
+    }
+  }
+
+  /**
+   * Cancel the extraction. The extracting thread is interrupted and deletes all files it has
+   * written once it stops. Files already present are deleted immediately as well, since the thread
+   * may be blocked in non-interruptible I/O. Threads waiting for the extraction fail.
+   */
+  void cancel() {
+    cancelled = true;
+    fail(new TurnkeyException("Unpacking of " + platformPrefix + " was cancelled"));
+    final Thread thread = worker;
+    if (thread != null) {
+      thread.interrupt();
+    }
+    deleteFiles();
+  }
+
+  /** Delete all files of this extraction, ignoring failures. */
+  private void deleteFiles() {
+    for (final String file : files) {
+      try {
+        deleteIfExists(directory.resolve(file));
+      } catch (final IOException ignored) {
+        // best effort, the file is also scheduled for deletion on exit
+      }
+    }
+  }
+
+  /**
+   * Get the number of files completely unpacked so far.
+   *
+   * @return the number of files.
+   */
+  int getExtractedCount() {
+    synchronized (lock) {
+      return extracted;
+    }
+  }
+
+  /**
+   * Get the total number of files in this extraction.
+   *
+   * @return the number of files.
+   */
+  int getFileCount() {
+    return files.size();
+  }
+
+  /**
+   * Record a failure and wake up all waiting threads. Only the first failure is kept.
+   *
+   * @param e the failure.
+   */
+  private void fail(final TurnkeyException e) {
+    synchronized (lock) {
+      if (failure == null) {
+        failure = e;
+      }
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Wait until the given file and all files preceding it in extraction order are unpacked. Files
+   * not part of this extraction are not waited for.
+   *
+   * @param file the file name.
+   * @throws TurnkeyException if the extraction failed before the file was unpacked.
+   */
+  void await(final String file) {
+    awaitCount(files.indexOf(file) + 1, Deadline.NONE);
+  }
+
+  /**
+   * Wait until the given file and all files preceding it in extraction order are unpacked or the
+   * deadline expires. Files not part of this extraction are not waited for.
+   *
+   * @param file the file name.
+   * @param deadline the deadline.
+   * @return {@code true} if the files are unpacked, {@code false} if the deadline expired.
+   * @throws TurnkeyException if the extraction failed before the file was unpacked.
+   */
+  boolean await(final String file, final Deadline deadline) {
+    return awaitCount(files.indexOf(file) + 1, deadline);
+  }
+
+  /**
+   * Wait until all files are unpacked.
+   *
+   * @throws TurnkeyException if the extraction failed.
+   */
+  void awaitAll() {
+    awaitCount(files.size(), Deadline.NONE);
+  }
+
+  /**
+   * Wait until all files are unpacked or the deadline expires.
+   *
+   * @param deadline the deadline.
+   * @return {@code true} if all files are unpacked, {@code false} if the deadline expired.
+   * @throws TurnkeyException if the extraction failed.
+   */
+  boolean awaitAll(final Deadline deadline) {
+    return awaitCount(files.size(), deadline);
+  }
+
+  /**
+   * Wait until at least the given number of files are unpacked or the deadline expires.
+   *
+   * @param count the number of files.
+   * @param deadline the deadline.
+   * @return {@code true} if the files are unpacked, {@code false} if the deadline expired.
+   * @throws TurnkeyException if the extraction failed before the count was reached.
+   */
+  private boolean awaitCount(final int count, final Deadline deadline) {
+    synchronized (lock) {
+      while (extracted < count) {
+        if (failure != null) {
+          throw new TurnkeyException("Failed to unpack " + platformPrefix, failure);
+        }
+        final long remaining = deadline.remainingNanos();
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          if (deadline.isBounded()) {
+            NANOSECONDS.timedWait(lock, remaining);
+          } else {
+            lock.wait();
+          }
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new TurnkeyException(
+              "Interrupted while waiting for unpacking of " + file(count), e);
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get a human-readable name for the file with the given one-based position.
+   *
+   * @param count the position.
+   * @return the resource path of the file.
+   */
+  private String file(final int count) {
+    return platformPrefix.resolve(files.get(count - 1));
+  }
+
+  /**
+   * Extract a single file to a given directory on the file system. The file will be scheduled for
+   * deletion on exit. Writing is throttled by the {@linkplain ExtractionScheduler#getDefault()
+   * default scheduler}.
+   *
+   * @param source path to the file to extract.
+   * @param destination the target file to unpack to.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @throws TurnkeyException if the named library does not exist or cannot be copied.
+   */
+  private static void unpackFile(
+      final String source,
+      final Path destination,
+      final Function<String, @Nullable InputStream> getResourceAsStream) {
+    destination.toFile().deleteOnExit();
+
+    try (InputStream libraryFile = getResourceAsStream.apply(source)) {
+      if (libraryFile == null) {
+        throw new TurnkeyException("Missing file at " + source + ", packaging error!");
+      }
+      try (OutputStream targetFile = newOutputStream(destination)) {
+        ExtractionScheduler.getDefault().copy(libraryFile, targetFile);
+      }
+    } catch (IOException e) {
+      throw new TurnkeyException("Failed to unpack " + source, e);
+    }
+  }
+}
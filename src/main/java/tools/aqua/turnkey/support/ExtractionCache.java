@@ -0,0 +1,695 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.file.Files.copy;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createFile;
+import static java.nio.file.Files.createLink;
+import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.getPosixFilePermissions;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.setPosixFilePermissions;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.nio.file.attribute.PosixFilePermission.GROUP_EXECUTE;
+import static java.nio.file.attribute.PosixFilePermission.OTHERS_EXECUTE;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static tools.aqua.turnkey.support.Utilities.checkInterrupted;
+import static tools.aqua.turnkey.support.Utilities.deleteRecursively;
+import static tools.aqua.turnkey.support.Utilities.sha256;
+import static tools.aqua.turnkey.support.Utilities.toHex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A content-addressed store for unpacked files, shared between bundles, bundle versions, and JVMs.
+ * It is enabled by setting the system property {@value #CACHE_DIRECTORY_PROPERTY} to a directory.
+ *
+ * <p>Each unpacked file is stored once per SHA-256 digest in {@code blobs/} and hard-linked into
+ * the load directories in {@code loads/}, falling back to a copy if linking is not supported.
+ * Therefore, only files whose content is not yet present are written. For every load directory
+ * linking a blob, a marker file {@code refs/<digest>/<load directory>} is created. A load directory
+ * is alive while the JVM that created it holds the lock on its sibling {@code .lock} file.
+ *
+ * <p>The cache is shared by all users the cache directory grants write access to: all directories
+ * and lock files are given the cache directory's permissions, and blobs are made read-only for
+ * everyone. These users must trust each other, since they can replace each other's files. If the
+ * cache cannot be used, e.g., since it is not writable for the current user, files are unpacked
+ * from the resource into an uncached directory instead.
+ *
+ * <p>After each extraction, the cache is garbage-collected: dead load directories and their
+ * reference markers are deleted, followed by all blobs without any reference. Since a new
+ * extraction links existing blobs before collection runs, files shared with a previous bundle
+ * version are retained while files only used by the old version are removed.
+ */
+// shared by all extraction threads of the JVM, so state is guarded by monitors
+@SuppressWarnings({"PMD.AvoidSynchronizedAtMethodLevel", "PMD.AvoidSynchronizedStatement"})
+final class ExtractionCache {
+
+  /** The system property naming the cache directory. */
+  static final String CACHE_DIRECTORY_PROPERTY = "tools.aqua.turnkey.cache-dir";
+
+  /** The file extension of load directory lock files. */
+  private static final String LOCK_EXTENSION = ".lock";
+
+  /** The file extension of blobs being written. */
+  private static final String TEMP_EXTENSION = ".tmp";
+
+  /** The permissions of published blobs on POSIX file systems. */
+  private static final Set<PosixFilePermission> BLOB_PERMISSIONS =
+      PosixFilePermissions.fromString("r--r--r--");
+
+  /** The minimum age of an abandoned temporary blob before it is collected. */
+  private static final long TEMP_EXPIRY_MILLIS = HOURS.toMillis(1);
+
+  /** If {@link #defaultCache} has been initialized. */
+  private static boolean defaultInitialized;
+
+  /** The cache configured via system properties, if any. */
+  private static @Nullable ExtractionCache defaultCache;
+
+  /**
+   * The permissions of all directories, copied from the cache directory, or {@code null} if the
+   * file system does not support POSIX permissions.
+   */
+  private final @Nullable Set<PosixFilePermission> directoryPermissions;
+
+  /**
+   * The permissions of all lock and marker files, i.e., {@link #directoryPermissions} without
+   * execute permissions, or {@code null} if the file system does not support POSIX permissions.
+   */
+  private final @Nullable Set<PosixFilePermission> filePermissions;
+
+  /** The blob directory. */
+  private final Path blobs;
+
+  /** The reference marker directory. */
+  private final Path refs;
+
+  /** The load directory parent. */
+  private final Path loads;
+
+  /** The node-wide cache lock file, guarding all structural modifications. */
+  private final Path cacheLockFile;
+
+  /**
+   * The channel for {@link #cacheLockFile}, guarded by {@link #lock}. It is reopened if an
+   * interrupt closed it.
+   */
+  private FileChannel cacheLock;
+
+  /** The JVM-local lock serializing access to {@link #cacheLock}. */
+  private final Object lock = new Object();
+
+  /** The lock files of the load directories created by this JVM, by directory name. */
+  private final Map<String, FileLock> ownLoadDirectories = new ConcurrentHashMap<>();
+
+  /**
+   * Open or create a cache. All directories and lock files are given the permissions of the cache
+   * directory, if they are owned by the current user.
+   *
+   * @param root the cache directory.
+   * @throws IOException if the cache structure cannot be created or the cache lock cannot be
+   *     opened, e.g., since the cache is not writable for the current user.
+   */
+  ExtractionCache(final Path root) throws IOException {
+    directoryPermissions = getPermissions(createDirectories(root));
+    filePermissions = withoutExecute(directoryPermissions);
+    blobs = createSharedDirectory(root.resolve("blobs"));
+    refs = createSharedDirectory(root.resolve("refs"));
+    loads = createSharedDirectory(root.resolve("loads"));
+    cacheLockFile = root.resolve("cache.lock");
+    cacheLock = openSharedLockFile(cacheLockFile);
+  }
+
+  /**
+   * Get the cache configured by the {@value #CACHE_DIRECTORY_PROPERTY} system property.
+   *
+   * @return the cache or {@code null} if caching is disabled or the cache cannot be opened.
+   */
+  static synchronized @Nullable ExtractionCache getDefault() {
+    if (!defaultInitialized) {
+      final String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+      if (directory != null) {
+        try {
+          defaultCache = new ExtractionCache(Paths.get(directory));
+        } catch (final IOException ignored) {
+          // e.g., owned by another user, unpack without the cache
+        }
+      }
+      defaultInitialized = true;
+    }
+    return defaultCache;
+  }
+
+  /**
+   * Create a new load directory that is kept alive until the JVM exits. The directory is scheduled
+   * for deletion on exit.
+   *
+   * @return the new directory, or {@code null} if the cache cannot be locked or written.
+   */
+  @Nullable Path createLoadDirectory() {
+    try {
+      return withCacheLock(
+          () -> {
+            final Path directory = createTempDirectory(loads, "turnkey");
+            directory.toFile().deleteOnExit();
+            share(directory, directoryPermissions);
+            final Path lockFile = lockFileOf(directory.getFileName().toString());
+            final FileChannel channel = openSharedLockFile(lockFile);
+            lockFile.toFile().deleteOnExit();
+            ownLoadDirectories.put(directory.getFileName().toString(), channel.lock());
+            return directory;
+          });
+    } catch (final IOException ignored) {
+      return null; // e.g., not writable for the current user
+    }
+  }
+
+  /**
+   * Discard a load directory created by this cache, e.g., after an aborted extraction. Its files
+   * and its lock are removed; blobs it referenced are collected by the next garbage collection.
+   * Failures are ignored, since the directory is also scheduled for deletion on exit.
+   *
+   * @param directory the load directory.
+   */
+  void discardLoadDirectory(final Path directory) {
+    final String name = directory.getFileName().toString();
+    try {
+      withCacheLock(
+          () -> {
+            deleteRecursively(directory);
+            final FileLock directoryLock = ownLoadDirectories.remove(name);
+            if (directoryLock != null) {
+              directoryLock.channel().close();
+            }
+            deleteIfExists(lockFileOf(name));
+            return null;
+          });
+    } catch (final IOException ignored) {
+      // best effort, cleaned up on exit or by a later collection
+    }
+  }
+
+  /**
+   * Unpack a file into a load directory. If a blob with the same content exists, it is linked;
+   * otherwise, it is written first. If the cache cannot be locked or written, or the blob is not
+   * accessible, the file is unpacked from the resource instead. The file will be scheduled for
+   * deletion on exit.
+   *
+   * @param source path to the file to extract.
+   * @param destination the target file in a load directory created by this cache.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @throws TurnkeyException if the named library does not exist or cannot be unpacked.
+   */
+  void unpack(
+      final String source,
+      final Path destination,
+      final Function<String, @Nullable InputStream> getResourceAsStream) {
+    destination.toFile().deleteOnExit();
+
+    final String digest;
+    try {
+      digest = digest(source, getResourceAsStream);
+    } catch (final IOException e) {
+      throw new TurnkeyException("Failed to unpack " + source, e);
+    }
+
+    try {
+      // the reference marker keeps the blob from being collected
+      if (link(store(source, digest, destination, getResourceAsStream), destination)) {
+        return;
+      }
+    } catch (final IOException ignored) {
+      // e.g., modified by another user, who has not shared it with this one
+    }
+
+    try (InputStream in = open(source, getResourceAsStream);
+        OutputStream out = newOutputStream(destination)) {
+      ExtractionScheduler.getDefault().copy(in, out);
+    } catch (final IOException e) {
+      throw new TurnkeyException("Failed to unpack " + source, e);
+    }
+  }
+
+  /**
+   * Make sure a blob is stored and referenced by a load directory, writing it if necessary.
+   *
+   * @param source the resource path.
+   * @param digest the resource's digest.
+   * @param destination the target file in a load directory created by this cache.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @return the blob.
+   * @throws TurnkeyException if the resource does not exist or changed while reading.
+   * @throws IOException if locking, reading, or writing fails.
+   */
+  private Path store(
+      final String source,
+      final String digest,
+      final Path destination,
+      final Function<String, @Nullable InputStream> getResourceAsStream)
+      throws IOException {
+    final String loadDirectory = destination.getParent().getFileName().toString();
+    final Path blob = blobs.resolve(digest);
+    boolean referenced = false;
+    while (!referenced) {
+      final Path temporary = exists(blob) ? null : write(source, digest, getResourceAsStream);
+      referenced =
+          withCacheLock(
+              () -> {
+                final Path refDirectory = createSharedDirectory(refs.resolve(digest));
+                try {
+                  createFile(refDirectory.resolve(loadDirectory));
+                } catch (final FileAlreadyExistsException ignored) {
+                  // already referenced by this directory
+                }
+                if (temporary != null) {
+                  publish(temporary, blob);
+                } else if (!exists(blob)) {
+                  return false; // collected in the meantime, write it again
+                }
+                return true;
+              });
+    }
+    return blob;
+  }
+
+  /**
+   * Compute the digest of a resource.
+   *
+   * @param source the resource path.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @return the hex-encoded SHA-256 digest.
+   * @throws TurnkeyException if the resource does not exist.
+   * @throws IOException if reading fails.
+   */
+  private static String digest(
+      final String source, final Function<String, @Nullable InputStream> getResourceAsStream)
+      throws IOException {
+    final MessageDigest digest = sha256();
+    try (InputStream in = open(source, getResourceAsStream)) {
+      final byte[] buffer = new byte[1 << 13];
+      try (InputStream digesting = new DigestInputStream(in, digest)) {
+        while (digesting.read(buffer) >= 0) {
+          checkInterrupted();
+        }
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Write a resource to a temporary blob file, verifying its digest.
+   *
+   * @param source the resource path.
+   * @param digest the expected digest.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @return the temporary file.
+   * @throws TurnkeyException if the resource does not exist or changed while reading.
+   * @throws IOException if reading or writing fails.
+   */
+  private Path write(
+      final String source,
+      final String digest,
+      final Function<String, @Nullable InputStream> getResourceAsStream)
+      throws IOException {
+    final Path temporary = createTempFile(blobs, digest, TEMP_EXTENSION);
+    boolean written = false;
+    try {
+      final MessageDigest actual = sha256();
+      try (InputStream in = open(source, getResourceAsStream);
+          OutputStream out = new DigestOutputStream(newOutputStream(temporary), actual)) {
+        ExtractionScheduler.getDefault().copy(in, out);
+      }
+      if (!digest.equals(toHex(actual.digest()))) {
+        throw new TurnkeyException("Content of " + source + " changed while unpacking");
+      }
+      makeShared(temporary);
+      written = true;
+      return temporary;
+    } finally {
+      if (!written) {
+        deleteIfExists(temporary);
+      }
+    }
+  }
+
+  /**
+   * Open a resource, failing if it does not exist.
+   *
+   * @param source the resource path.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @return the open stream.
+   * @throws TurnkeyException if the resource does not exist.
+   */
+  private static InputStream open(
+      final String source, final Function<String, @Nullable InputStream> getResourceAsStream) {
+    final InputStream in = getResourceAsStream.apply(source);
+    if (in == null) {
+      throw new TurnkeyException("Missing file at " + source + ", packaging error!");
+    }
+    return in;
+  }
+
+  /**
+   * Move a temporary blob into place. If another process published the same blob first, the
+   * temporary file is discarded.
+   *
+   * @param temporary the temporary file.
+   * @param blob the final blob path.
+   * @throws IOException if moving fails.
+   */
+  private static void publish(final Path temporary, final Path blob) throws IOException {
+    if (exists(blob)) {
+      deleteIfExists(temporary);
+      return;
+    }
+    try {
+      move(temporary, blob, ATOMIC_MOVE);
+    } catch (final FileAlreadyExistsException e) {
+      deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Make a blob readable, but not writable, for all users. Temporary files are only accessible to
+   * their owner, which would prevent JVMs running as other users from using the blob.
+   *
+   * @param blob the blob.
+   * @throws IOException if the permissions cannot be changed.
+   */
+  private static void makeShared(final Path blob) throws IOException {
+    try {
+      setPosixFilePermissions(blob, BLOB_PERMISSIONS);
+    } catch (final UnsupportedOperationException ignored) {
+      // not a POSIX file system, permissions are inherited from the directory
+    }
+  }
+
+  /**
+   * Create a directory, if necessary, and give it the {@link #directoryPermissions}.
+   *
+   * @param directory the directory.
+   * @return the directory.
+   * @throws IOException if the directory cannot be created.
+   */
+  private Path createSharedDirectory(final Path directory) throws IOException {
+    createDirectories(directory);
+    share(directory, directoryPermissions);
+    return directory;
+  }
+
+  /**
+   * Open a lock file for writing, creating it if necessary, and give it the {@link
+   * #filePermissions}.
+   *
+   * @param lockFile the lock file.
+   * @return the open channel.
+   * @throws IOException if the file cannot be opened.
+   */
+  private FileChannel openSharedLockFile(final Path lockFile) throws IOException {
+    final FileChannel channel = FileChannel.open(lockFile, CREATE, WRITE);
+    share(lockFile, filePermissions);
+    return channel;
+  }
+
+  /**
+   * Set the permissions of a file or directory. Failures are ignored, since the file may be owned
+   * by another user, who already shared it.
+   *
+   * @param file the file or directory.
+   * @param permissions the permissions, or {@code null} if not supported.
+   */
+  private static void share(
+      final Path file, final @Nullable Set<PosixFilePermission> permissions) {
+    if (permissions != null) {
+      try {
+        setPosixFilePermissions(file, permissions);
+      } catch (final IOException ignored) {
+        // not owned by the current user
+      }
+    }
+  }
+
+  /**
+   * Get the POSIX permissions of a file or directory.
+   *
+   * @param file the file or directory.
+   * @return the permissions, or {@code null} if the file system does not support them.
+   * @throws IOException if the permissions cannot be read.
+   */
+  private static @Nullable Set<PosixFilePermission> getPermissions(final Path file)
+      throws IOException {
+    try {
+      return getPosixFilePermissions(file);
+    } catch (final UnsupportedOperationException ignored) {
+      return null;
+    }
+  }
+
+  /**
+   * Remove all execute permissions from a set of permissions.
+   *
+   * @param permissions the permissions, or {@code null} if not supported.
+   * @return a copy without execute permissions, or {@code null} if not supported.
+   */
+  private static @Nullable Set<PosixFilePermission> withoutExecute(
+      final @Nullable Set<PosixFilePermission> permissions) {
+    if (permissions == null) {
+      return null;
+    }
+    final Set<PosixFilePermission> result = EnumSet.noneOf(PosixFilePermission.class);
+    result.addAll(permissions);
+    result.removeAll(EnumSet.of(OWNER_EXECUTE, GROUP_EXECUTE, OTHERS_EXECUTE));
+    return result;
+  }
+
+  /**
+   * Make a blob available at the destination, using a hard link if possible.
+   *
+   * @param blob the blob.
+   * @param destination the destination file.
+   * @return {@code true} if the blob was linked or copied, {@code false} if it is not accessible.
+   */
+  private static boolean link(final Path blob, final Path destination) {
+    try {
+      createLink(destination, blob);
+      return true;
+    } catch (final UnsupportedOperationException | IOException ignored) {
+      // not supported or, e.g., owned by another user, try a copy
+    }
+    try {
+      copy(blob, destination);
+      return true;
+    } catch (final IOException e) {
+      try {
+        deleteIfExists(destination);
+      } catch (final IOException ignored) {
+        // scheduled for deletion on exit
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Delete dead load directories, their reference markers, and all unreferenced blobs. Failures are
+   * ignored, since collection is retried after the next extraction.
+   */
+  void collectGarbage() {
+    try {
+      withCacheLock(
+          () -> {
+            collectLoadDirectories();
+            collectReferences();
+            collectBlobs();
+            return null;
+          });
+    } catch (final IOException ignored) {
+      // best effort, retried after the next extraction
+    }
+  }
+
+  /**
+   * Delete all load directories whose lock is not held.
+   *
+   * @throws IOException if listing fails.
+   */
+  private void collectLoadDirectories() throws IOException {
+    for (final Path lockFile : list(loads)) {
+      final String name = lockFile.getFileName().toString();
+      if (!name.endsWith(LOCK_EXTENSION)) {
+        continue;
+      }
+      final String directoryName = name.substring(0, name.length() - LOCK_EXTENSION.length());
+      if (ownLoadDirectories.containsKey(directoryName)) {
+        continue;
+      }
+      try (FileChannel channel = FileChannel.open(lockFile, WRITE);
+          FileLock lock = channel.tryLock()) {
+        if (lock != null) {
+          deleteRecursively(loads.resolve(directoryName));
+          deleteIfExists(lockFile);
+        }
+      } catch (final IOException | OverlappingFileLockException ignored) {
+        // in use or inaccessible, retry later
+      }
+    }
+    for (final Path directory : list(loads)) {
+      // directories are always created together with their lock file while holding the cache lock
+      if (isDirectory(directory) && !exists(lockFileOf(directory.getFileName().toString()))) {
+        deleteRecursively(directory);
+      }
+    }
+  }
+
+  /**
+   * Delete all reference markers for non-existing load directories and empty marker directories.
+   *
+   * @throws IOException if listing fails.
+   */
+  private void collectReferences() throws IOException {
+    for (final Path refDirectory : list(refs)) {
+      for (final Path marker : list(refDirectory)) {
+        if (!exists(loads.resolve(marker.getFileName().toString()))) {
+          deleteIfExists(marker);
+        }
+      }
+      if (list(refDirectory).isEmpty()) {
+        deleteIfExists(refDirectory);
+      }
+    }
+  }
+
+  /**
+   * Delete all blobs without reference markers and abandoned temporary blobs.
+   *
+   * @throws IOException if listing fails.
+   */
+  private void collectBlobs() throws IOException {
+    final long expiry = System.currentTimeMillis() - TEMP_EXPIRY_MILLIS;
+    for (final Path blob : list(blobs)) {
+      final String name = blob.getFileName().toString();
+      if (name.endsWith(TEMP_EXTENSION)) {
+        // may still be written outside the cache lock
+        if (getLastModifiedTime(blob).toMillis() < expiry) {
+          deleteIfExists(blob);
+        }
+      } else if (!exists(refs.resolve(name))) {
+        deleteIfExists(blob);
+      }
+    }
+  }
+
+  /**
+   * Get the lock file path for a load directory.
+   *
+   * @param directoryName the load directory name.
+   * @return the lock file.
+   */
+  private Path lockFileOf(final String directoryName) {
+    return loads.resolve(directoryName + LOCK_EXTENSION);
+  }
+
+  /**
+   * List a directory.
+   *
+   * @param directory the directory.
+   * @return the directory entries.
+   * @throws IOException if listing fails.
+   */
+  private static List<Path> list(final Path directory) throws IOException {
+    final List<Path> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream = newDirectoryStream(directory)) {
+      stream.forEach(entries::add);
+    }
+    return entries;
+  }
+
+  /**
+   * Run an action while holding the node-wide cache lock.
+   *
+   * @param action the action.
+   * @param <T> the action's result type.
+   * @return the action's result.
+   * @throws IOException if locking or the action fails.
+   */
+  private <T> T withCacheLock(final LockedAction<T> action) throws IOException {
+    synchronized (lock) {
+      if (!cacheLock.isOpen()) {
+        cacheLock = openSharedLockFile(cacheLockFile);
+      }
+      final FileLock fileLock = cacheLock.lock();
+      try {
+        return action.run();
+      } finally {
+        if (fileLock.isValid()) {
+          fileLock.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * An action performed while holding the cache lock.
+   *
+   * @param <T> the result type.
+   */
+  @FunctionalInterface
+  private interface LockedAction<T> {
+    /**
+     * Perform the action.
+     *
+     * @return the result.
+     * @throws IOException if the action fails.
+     */
+    T run() throws IOException;
+  }
+}
@@ -0,0 +1,671 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.setPosixFilePermissions;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Throttles the I/O performed when unpacking libraries. This is intended for nodes that start many
+ * JVMs at once, whose simultaneous extractions would otherwise saturate the local disk.
+ *
+ * <p>Files are written in chunks of at most {@value #MAX_CHUNK_SIZE} bytes. Writing a chunk
+ * requires holding one of a fixed number of <em>slots</em>, so the bytes in flight are bounded by
+ * the number of slots times the chunk size. Before a chunk is written, its share of the bandwidth
+ * limit is reserved from a token bucket: the bucket records the time until which the bandwidth is
+ * already spoken for, and each chunk waits until then and extends it by the time writing the chunk
+ * takes at the full bandwidth limit. A single writer can thus use the whole limit, while the total
+ * bandwidth of all writers stays below it.
+ *
+ * <p>If a shared directory is configured, slots are represented by lock files in that directory,
+ * the token bucket is stored in a file in that directory, and the limits apply to all JVMs on the
+ * node using the same directory. The directory is created if necessary; a directory and lock files
+ * created by a scheduler are writable for all users, so JVMs of different users can coordinate. If
+ * the shared directory cannot be used, the scheduler falls back to JVM-local limits and reports the
+ * cause via {@link #getSharedDirectoryFailure()}. Without a shared directory, the limits apply to
+ * the current JVM only.
+ *
+ * <p>The default scheduler is configured using the following system properties. If neither limit is
+ * set, no throttling takes place.
+ *
+ * <ul>
+ *   <li>{@value #SHARED_DIRECTORY_PROPERTY}: the shared directory for node-wide coordination,
+ *   <li>{@value #MAX_BYTES_IN_FLIGHT_PROPERTY}: the maximum number of bytes being written at once
+ *       (default: {@value #DEFAULT_MAX_BYTES_IN_FLIGHT} if only a bandwidth limit is set), and
+ *   <li>{@value #MAX_BYTES_PER_SECOND_PROPERTY}: the maximum write bandwidth in bytes per second.
+ * </ul>
+ */
+// shared by all extraction threads of the JVM, so state is guarded by monitors
+@SuppressWarnings({"PMD.AvoidSynchronizedAtMethodLevel", "PMD.DoNotUseThreads"})
+public final class ExtractionScheduler {
+
+  /** The system property naming the shared directory used for node-wide coordination. */
+  public static final String SHARED_DIRECTORY_PROPERTY = "tools.aqua.turnkey.io.shared-dir";
+
+  /** The system property defining the maximum number of bytes in flight. */
+  public static final String MAX_BYTES_IN_FLIGHT_PROPERTY =
+      "tools.aqua.turnkey.io.max-bytes-in-flight";
+
+  /** The system property defining the maximum write bandwidth in bytes per second. */
+  public static final String MAX_BYTES_PER_SECOND_PROPERTY =
+      "tools.aqua.turnkey.io.max-bytes-per-second";
+
+  /** The value used to denote the absence of a limit. */
+  public static final long UNLIMITED = Long.MAX_VALUE;
+
+  /** The bytes in flight used if only a bandwidth limit is configured. */
+  public static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 4L << 20;
+
+  /** The maximum number of bytes written while holding a slot. */
+  static final int MAX_CHUNK_SIZE = 1 << 20;
+
+  /** The initial delay between attempts to acquire a slot lock file. */
+  private static final long MIN_BACKOFF_MILLIS = 5;
+
+  /** The maximum delay between attempts to acquire a slot lock file. */
+  private static final long MAX_BACKOFF_MILLIS = 100;
+
+  /**
+   * The maximum time the shared token bucket may be reserved ahead of the current time. A larger
+   * value indicates that the system clock was set back.
+   */
+  private static final long MAX_RESERVATION_NANOS = SECONDS.toNanos(60);
+
+  /** The coordination state for each shared directory, shared by all schedulers in this JVM. */
+  private static final Map<Path, SharedDirectory> SHARED_DIRECTORIES = new ConcurrentHashMap<>();
+
+  /** The scheduler used by {@link TurnKey}, created on first use. */
+  private static @Nullable ExtractionScheduler defaultScheduler;
+
+  /** The shared directory state, or {@code null} for JVM-local throttling. */
+  private final @Nullable SharedDirectory sharedDirectory;
+
+  /** The maximum number of bytes in flight, or {@link #UNLIMITED}. */
+  private final long maxBytesInFlight;
+
+  /** The maximum write bandwidth in bytes per second, or {@link #UNLIMITED}. */
+  private final long maxBytesPerSecond;
+
+  /** The number of bytes written while holding a slot. */
+  private final int chunkSize;
+
+  /** The number of slots. */
+  private final int slotCount;
+
+  /** The JVM-local slot permits. */
+  private final Semaphore localSlots;
+
+  /**
+   * The time until which the JVM-local token bucket is reserved, as given by {@link
+   * System#nanoTime()}, guarded by this object's monitor. Unused if a shared directory is set.
+   */
+  private long reservedUntilNanos = System.nanoTime();
+
+  /** The total time spent waiting for a slot, in nanoseconds. */
+  private final AtomicLong slotWaitNanos = new AtomicLong();
+
+  /** The total time spent waiting to enforce the bandwidth limit, in nanoseconds. */
+  private final AtomicLong throttleNanos = new AtomicLong();
+
+  /** The total number of bytes written through this scheduler. */
+  private final AtomicLong bytesWritten = new AtomicLong();
+
+  /** The failure that made the shared directory unusable, or {@code null}. */
+  private final AtomicReference<@Nullable IOException> sharedDirectoryFailure =
+      new AtomicReference<>();
+
+  /**
+   * Create a new scheduler.
+   *
+   * @param sharedDirectory the directory used for node-wide coordination, or {@code null} to only
+   *     throttle this JVM.
+   * @param maxBytesInFlight the maximum number of bytes being written at once, or {@link
+   *     #UNLIMITED}.
+   * @param maxBytesPerSecond the maximum write bandwidth in bytes per second, or {@link
+   *     #UNLIMITED}.
+   * @throws IllegalArgumentException if a limit is not positive.
+   */
+  public ExtractionScheduler(
+      final @Nullable Path sharedDirectory,
+      final long maxBytesInFlight,
+      final long maxBytesPerSecond) {
+    if (maxBytesInFlight <= 0) {
+      throw new IllegalArgumentException("maxBytesInFlight must be positive");
+    }
+    if (maxBytesPerSecond <= 0) {
+      throw new IllegalArgumentException("maxBytesPerSecond must be positive");
+    }
+    this.sharedDirectory =
+        sharedDirectory == null
+            ? null
+            : SHARED_DIRECTORIES.computeIfAbsent(
+                sharedDirectory.toAbsolutePath().normalize(), SharedDirectory::new);
+    this.maxBytesPerSecond = maxBytesPerSecond;
+    this.maxBytesInFlight =
+        maxBytesInFlight == UNLIMITED && maxBytesPerSecond != UNLIMITED
+            ? DEFAULT_MAX_BYTES_IN_FLIGHT
+            : maxBytesInFlight;
+    chunkSize = (int) min(MAX_CHUNK_SIZE, this.maxBytesInFlight);
+    slotCount = (int) min(Integer.MAX_VALUE, this.maxBytesInFlight / chunkSize);
+    localSlots = new Semaphore(slotCount, true);
+  }
+
+  /**
+   * Get the scheduler used for unpacking. On first use, it is created from the system properties
+   * described in the class documentation.
+   *
+   * @return the default scheduler.
+   * @throws TurnkeyException if a system property has an invalid value.
+   */
+  public static synchronized ExtractionScheduler getDefault() {
+    if (defaultScheduler == null) {
+      final String sharedDirectory = System.getProperty(SHARED_DIRECTORY_PROPERTY);
+      defaultScheduler =
+          new ExtractionScheduler(
+              sharedDirectory == null ? null : Paths.get(sharedDirectory),
+              getLimitProperty(MAX_BYTES_IN_FLIGHT_PROPERTY),
+              getLimitProperty(MAX_BYTES_PER_SECOND_PROPERTY));
+    }
+    return defaultScheduler;
+  }
+
+  /**
+   * Replace the scheduler used for unpacking. This must be called before the first bundle is
+   * loaded to have an effect on all extractions.
+   *
+   * @param scheduler the new default scheduler.
+   */
+  public static synchronized void setDefault(final ExtractionScheduler scheduler) {
+    defaultScheduler = scheduler;
+  }
+
+  /**
+   * Read a positive limit from a system property.
+   *
+   * @param key the property key.
+   * @return the limit or {@link #UNLIMITED} if the property is undefined.
+   * @throws TurnkeyException if the value is not a positive number.
+   */
+  private static long getLimitProperty(final String key) {
+    final String value = System.getProperty(key);
+    if (value == null) {
+      return UNLIMITED;
+    }
+    try {
+      final long limit = Long.parseLong(value.trim());
+      if (limit > 0) {
+        return limit;
+      }
+    } catch (final NumberFormatException ignored) {
+      // handled below
+    }
+    throw new TurnkeyException("Invalid value for " + key + ": " + value);
+  }
+
+  /**
+   * Check if this scheduler limits I/O at all.
+   *
+   * @return {@code true} iff a limit is configured.
+   */
+  public boolean isThrottling() {
+    return maxBytesInFlight != UNLIMITED;
+  }
+
+  /**
+   * Get the total time threads have spent waiting for a slot.
+   *
+   * @return the wait time in nanoseconds.
+   */
+  public long getSlotWaitNanos() {
+    return slotWaitNanos.get();
+  }
+
+  /**
+   * Get the total time threads have spent waiting to enforce the bandwidth limit.
+   *
+   * @return the throttling time in nanoseconds.
+   */
+  public long getThrottleNanos() {
+    return throttleNanos.get();
+  }
+
+  /**
+   * Get the total number of bytes written through this scheduler.
+   *
+   * @return the byte count.
+   */
+  public long getBytesWritten() {
+    return bytesWritten.get();
+  }
+
+  /**
+   * Get the failure that made the shared directory unusable. Once it has failed, this scheduler
+   * only enforces its limits for the current JVM.
+   *
+   * @return the failure, or {@code null} if the shared directory is usable or not configured.
+   */
+  public @Nullable IOException getSharedDirectoryFailure() {
+    return sharedDirectoryFailure.get();
+  }
+
+  /**
+   * Get the shared directory state, unless it has failed.
+   *
+   * @return the state, or {@code null} for JVM-local throttling.
+   */
+  private @Nullable SharedDirectory getSharedDirectory() {
+    return sharedDirectoryFailure.get() == null ? sharedDirectory : null;
+  }
+
+  /**
+   * Stop using the shared directory after a failure, unless the failure was caused by an interrupt.
+   *
+   * @param e the failure.
+   * @throws IOException the failure, if the thread was interrupted.
+   */
+  private void abandonSharedDirectory(final IOException e) throws IOException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw e;
+    }
+    sharedDirectoryFailure.compareAndSet(null, e);
+  }
+
+  /**
+   * Copy an input stream to an output stream, respecting the configured limits.
+   *
+   * @param in the input stream.
+   * @param out the output stream.
+   * @throws InterruptedIOException if the thread was interrupted while waiting or copying.
+   * @throws IOException if the read or write operation fails. The stream may be partially written.
+   */
+  void copy(final InputStream in, final OutputStream out) throws IOException {
+    if (!isThrottling()) {
+      Utilities.copy(in, out);
+      return;
+    }
+
+    final byte[] buffer = new byte[chunkSize];
+    int read;
+    while ((read = readChunk(in, buffer)) > 0) {
+      Utilities.checkInterrupted();
+      throttle(read);
+      final int slot = acquireSlot();
+      try {
+        out.write(buffer, 0, read);
+        bytesWritten.addAndGet(read);
+      } finally {
+        releaseSlot(slot);
+      }
+    }
+  }
+
+  /**
+   * Fill the buffer from the input stream as far as possible.
+   *
+   * @param in the input stream.
+   * @param buffer the buffer.
+   * @return the number of bytes read, {@code 0} at the end of the stream.
+   * @throws IOException if reading fails.
+   */
+  private static int readChunk(final InputStream in, final byte[] buffer) throws IOException {
+    int filled = 0;
+    while (filled < buffer.length) {
+      final int read = in.read(buffer, filled, buffer.length - filled);
+      if (read < 0) {
+        break;
+      }
+      filled += read;
+    }
+    return filled;
+  }
+
+  /**
+   * Reserve the bandwidth for writing the given number of bytes and sleep until the reservation
+   * starts.
+   *
+   * @param bytes the number of bytes to write.
+   * @throws InterruptedIOException if the thread was interrupted while sleeping.
+   * @throws IOException if the shared token bucket cannot be accessed.
+   */
+  private void throttle(final int bytes) throws IOException {
+    if (maxBytesPerSecond == UNLIMITED) {
+      return;
+    }
+    final long costNanos = (long) ((double) bytes / maxBytesPerSecond * SECONDS.toNanos(1));
+    long waitNanos = -1;
+    final SharedDirectory shared = getSharedDirectory();
+    if (shared != null) {
+      try {
+        waitNanos = shared.reserve(costNanos);
+      } catch (final IOException e) {
+        abandonSharedDirectory(e);
+      }
+    }
+    if (waitNanos < 0) {
+      waitNanos = reserveLocal(costNanos);
+    }
+    if (waitNanos > 0) {
+      sleep(waitNanos);
+      throttleNanos.addAndGet(waitNanos);
+    }
+  }
+
+  /**
+   * Reserve bandwidth from the JVM-local token bucket.
+   *
+   * @param costNanos the time the write takes at the bandwidth limit.
+   * @return the time to wait until the reservation starts, in nanoseconds.
+   */
+  private synchronized long reserveLocal(final long costNanos) {
+    final long now = System.nanoTime();
+    final long start = reservedUntilNanos - now > 0 ? reservedUntilNanos : now;
+    reservedUntilNanos = start + costNanos;
+    return start - now;
+  }
+
+  /**
+   * Acquire a slot, blocking until one is available.
+   *
+   * @return the index of the acquired slot, {@code -1} for a JVM-local slot.
+   * @throws InterruptedIOException if the thread was interrupted while waiting.
+   * @throws IOException if the thread was interrupted while accessing a lock file.
+   */
+  private int acquireSlot() throws IOException {
+    final long start = System.nanoTime();
+    try {
+      localSlots.acquire();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      final InterruptedIOException interrupted =
+          new InterruptedIOException("Interrupted while waiting for an extraction slot");
+      interrupted.initCause(e);
+      throw interrupted;
+    }
+
+    boolean acquired = false;
+    try {
+      int slot = -1;
+      long backoff = MIN_BACKOFF_MILLIS;
+      SharedDirectory shared;
+      while ((shared = getSharedDirectory()) != null) {
+        try {
+          slot = shared.tryLockSlot(slotCount);
+        } catch (final IOException e) {
+          abandonSharedDirectory(e);
+          continue;
+        }
+        if (slot >= 0) {
+          break;
+        }
+        sleep(MILLISECONDS.toNanos(backoff));
+        backoff = min(MAX_BACKOFF_MILLIS, backoff * 2);
+      }
+      slotWaitNanos.addAndGet(max(0, System.nanoTime() - start));
+      acquired = true;
+      return slot;
+    } finally {
+      if (!acquired) {
+        localSlots.release();
+      }
+    }
+  }
+
+  /**
+   * Release a slot acquired via {@link #acquireSlot()}.
+   *
+   * @param slot the slot index.
+   * @throws IOException if the thread was interrupted while unlocking the lock file.
+   */
+  private void releaseSlot(final int slot) throws IOException {
+    try {
+      if (sharedDirectory != null && slot >= 0) {
+        sharedDirectory.releaseSlot(slot);
+      }
+    } catch (final IOException e) {
+      abandonSharedDirectory(e);
+    } finally {
+      localSlots.release();
+    }
+  }
+
+  /**
+   * Sleep for the given time, translating interruption to an I/O exception.
+   *
+   * @param nanos the time to sleep.
+   * @throws InterruptedIOException if the thread was interrupted.
+   */
+  private static void sleep(final long nanos) throws InterruptedIOException {
+    try {
+      NANOSECONDS.sleep(nanos);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      final InterruptedIOException interrupted =
+          new InterruptedIOException("Interrupted while throttling extraction");
+      interrupted.initCause(e);
+      throw interrupted;
+    }
+  }
+
+  /**
+   * The coordination state for a shared directory. A file can only be locked once per JVM, so all
+   * schedulers using the same directory share one instance. Locks held by copies of this class in
+   * other class loaders are treated like locks held by other JVMs.
+   */
+  private static final class SharedDirectory {
+    /** The name of the token bucket file. */
+    private static final String BANDWIDTH_FILE_NAME = "turnkey-bandwidth.lock";
+
+    /** The permissions of a shared directory created by a scheduler on POSIX file systems. */
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS =
+        PosixFilePermissions.fromString("rwxrwxrwx");
+
+    /** The permissions of lock files created by a scheduler on POSIX file systems. */
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS =
+        PosixFilePermissions.fromString("rw-rw-rw-");
+
+    /** The shared directory. */
+    private final Path directory;
+
+    /** The open slot lock file channels, by slot index, guarded by this object's monitor. */
+    private final Map<Integer, FileChannel> slotChannels = new HashMap<>();
+
+    /** The slot locks held by this JVM, by slot index, guarded by this object's monitor. */
+    private final Map<Integer, FileLock> slotLocks = new HashMap<>();
+
+    /** The open token bucket file channel, guarded by this object's monitor. */
+    private @Nullable FileChannel bandwidthChannel;
+
+    /** The buffer used to read and write the token bucket, guarded by this object's monitor. */
+    private final ByteBuffer bandwidthBuffer = ByteBuffer.allocate(Long.BYTES);
+
+    /**
+     * Create the state for a shared directory.
+     *
+     * @param directory the {@link #directory}.
+     */
+    SharedDirectory(final Path directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * Open a file in the shared directory for locking, reusing an existing channel unless it was
+     * closed by an interrupt. The directory and the file are created if necessary and made
+     * writable for all users.
+     *
+     * @param channel the existing channel, or {@code null}.
+     * @param name the file name.
+     * @return an open channel.
+     * @throws IOException if the directory cannot be created or the file cannot be opened.
+     */
+    private FileChannel reopen(final @Nullable FileChannel channel, final String name)
+        throws IOException {
+      if (channel != null && channel.isOpen()) {
+        return channel;
+      }
+      if (!isDirectory(directory)) {
+        share(createDirectories(directory), DIRECTORY_PERMISSIONS);
+      }
+      final Path file = directory.resolve(name);
+      final FileChannel opened = FileChannel.open(file, CREATE, READ, WRITE);
+      share(file, FILE_PERMISSIONS);
+      return opened;
+    }
+
+    /**
+     * Set the permissions of a file or directory. Failures are ignored, since it may be owned by
+     * another user, who already shared it, or the file system may not support permissions.
+     *
+     * @param file the file or directory.
+     * @param permissions the permissions.
+     */
+    private static void share(final Path file, final Set<PosixFilePermission> permissions) {
+      try {
+        setPosixFilePermissions(file, permissions);
+      } catch (final IOException | UnsupportedOperationException ignored) {
+        // not owned by the current user or not a POSIX file system
+      }
+    }
+
+    /**
+     * Try to lock a file without blocking.
+     *
+     * @param channel the file channel.
+     * @return the lock, or {@code null} if it is held by another process or another copy of this
+     *     class.
+     * @throws IOException if locking fails.
+     */
+    private static @Nullable FileLock tryLock(final FileChannel channel) throws IOException {
+      try {
+        return channel.tryLock();
+      } catch (final OverlappingFileLockException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Try to lock one of the slot lock files not already held by this JVM.
+     *
+     * @param slotCount the number of slots to consider.
+     * @return the locked slot index, or {@code -1} if all slots are locked.
+     * @throws IOException if a lock file cannot be accessed.
+     */
+    synchronized int tryLockSlot(final int slotCount) throws IOException {
+      for (int slot = 0; slot < slotCount; slot++) {
+        if (slotLocks.containsKey(slot)) {
+          continue;
+        }
+        final FileChannel channel =
+            reopen(slotChannels.get(slot), "turnkey-slot-" + slot + ".lock");
+        slotChannels.put(slot, channel);
+        final FileLock lock = tryLock(channel);
+        if (lock != null) {
+          slotLocks.put(slot, lock);
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Release a slot acquired via {@link #tryLockSlot(int)}.
+     *
+     * @param slot the slot index.
+     * @throws IOException if the lock file cannot be unlocked.
+     */
+    synchronized void releaseSlot(final int slot) throws IOException {
+      final FileLock lock = slotLocks.remove(slot);
+      if (lock != null && lock.isValid()) {
+        lock.release();
+      }
+    }
+
+    /**
+     * Reserve bandwidth from the shared token bucket. The bucket file stores the wall-clock time in
+     * nanoseconds until which the bandwidth is reserved.
+     *
+     * @param costNanos the time the write takes at the bandwidth limit.
+     * @return the time to wait until the reservation starts, in nanoseconds.
+     * @throws InterruptedIOException if the thread was interrupted while waiting for the lock.
+     * @throws IOException if the token bucket file cannot be accessed.
+     */
+    synchronized long reserve(final long costNanos) throws IOException {
+      final FileChannel channel = reopen(bandwidthChannel, BANDWIDTH_FILE_NAME);
+      bandwidthChannel = channel;
+
+      FileLock lock;
+      long backoff = MIN_BACKOFF_MILLIS;
+      while ((lock = tryLock(channel)) == null) {
+        sleep(MILLISECONDS.toNanos(backoff));
+        backoff = min(MAX_BACKOFF_MILLIS, backoff * 2);
+      }
+      try {
+        bandwidthBuffer.clear();
+        long reservedUntil = 0;
+        if (channel.read(bandwidthBuffer, 0) == Long.BYTES) {
+          reservedUntil = bandwidthBuffer.getLong(0);
+        }
+
+        final long now = MILLISECONDS.toNanos(System.currentTimeMillis());
+        if (reservedUntil - now > MAX_RESERVATION_NANOS) {
+          reservedUntil = now; // the clock was set back
+        }
+        final long start = max(reservedUntil, now);
+
+        bandwidthBuffer.clear();
+        bandwidthBuffer.putLong(0, start + costNanos);
+        channel.write(bandwidthBuffer, 0);
+        return start - now;
+      } finally {
+        if (lock.isValid()) {
+          lock.release();
+        }
+      }
+    }
+  }
+}
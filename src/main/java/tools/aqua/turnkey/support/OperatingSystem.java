@@ -20,6 +20,8 @@ package tools.aqua.turnkey.support;
 
 import static java.lang.System.getProperty;
 
+import org.jspecify.annotations.Nullable;
+
 /** Supported operating systems. */
 enum OperatingSystem {
   /** Mac OS. */
@@ -72,4 +74,19 @@ enum OperatingSystem {
       throw new UnsupportedPlatformException("Unsupported operating system: " + osName);
     }
   }
+
+  /**
+   * Find the operating system with the given directory name.
+   *
+   * @param name the directory name, e.g., as used in a bundle layout.
+   * @return the matching operating system or {@code null} if none matches.
+   */
+  static @Nullable OperatingSystem fromName(final String name) {
+    for (final OperatingSystem candidate : values()) {
+      if (candidate.name.equals(name)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
 }
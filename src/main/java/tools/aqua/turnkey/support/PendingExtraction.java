@@ -0,0 +1,200 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The start of a bundle's extraction, i.e., reading the metadata, creating the load directory, and
+ * starting to unpack the core libraries. It is run at most once, either by the thread that first
+ * needs it or by the {@link TurnKeyAgent} ahead of time.
+ *
+ * <p>Threads waiting with a deadline may give up. The bundle is then owned by nobody and is aborted
+ * as soon as it becomes available, so that no unpacked files are left behind.
+ */
+// waiting with a deadline needs a thread that can be abandoned, guarded by this object's monitor
+@SuppressWarnings({
+  "PMD.AvoidSynchronizedAtMethodLevel",
+  "PMD.AvoidSynchronizedStatement",
+  "PMD.DoNotUseThreads"
+})
+final class PendingExtraction implements Runnable {
+
+  /** The phase of starting an extraction. */
+  enum Phase {
+    /** Reading the metadata file. */
+    METADATA("metadata read", "metadata not yet read"),
+    /** Creating the load directory, possibly waiting for the cache lock. */
+    DIRECTORY("directory creation", "load directory not yet created");
+
+    /** The phase name used in error messages. */
+    final String description;
+
+    /** The progress made when the phase overran, used in error messages. */
+    final String progress;
+
+    /**
+     * Create a new phase.
+     *
+     * @param description the {@link #description}.
+     * @param progress the {@link #progress}.
+     */
+    Phase(final String description, final String progress) {
+      this.description = description;
+      this.progress = progress;
+    }
+  }
+
+  /** The library-specific prefix. */
+  private final String libraryPrefix;
+
+  /** The task producing the bundle. */
+  private final FutureTask<ExtractedBundle> task;
+
+  /** The current phase, guarded by this object's monitor. */
+  private Phase phase = Phase.METADATA;
+
+  /** If a waiter gave up, guarded by this object's monitor. */
+  private boolean abandoned;
+
+  /** If the bundle has been aborted, guarded by this object's monitor. */
+  private boolean aborted;
+
+  /**
+   * Create a new pending extraction. It must be started by calling {@link #run()}.
+   *
+   * @param libraryPrefix the {@link #libraryPrefix}.
+   * @param getResourceAsStream the function to use for loading resources.
+   */
+  PendingExtraction(
+      final String libraryPrefix,
+      final Function<String, @Nullable InputStream> getResourceAsStream) {
+    this.libraryPrefix = libraryPrefix;
+    this.task =
+        new FutureTask<ExtractedBundle>(
+            () -> TurnKey.extract(libraryPrefix, getResourceAsStream, this::enter)) {
+          @Override
+          protected void done() {
+            abortIfAbandoned();
+          }
+        };
+  }
+
+  /** Start the extraction in the calling thread. This has no effect if it has already started. */
+  @Override
+  public void run() {
+    task.run();
+  }
+
+  /**
+   * Record the current phase.
+   *
+   * @param next the phase entered.
+   */
+  private synchronized void enter(final Phase next) {
+    phase = next;
+  }
+
+  /**
+   * Wait for the bundle, running the extraction in the calling thread if it has not started yet.
+   *
+   * @return the bundle.
+   * @throws ExecutionException if starting the extraction failed.
+   * @throws InterruptedException if the thread was interrupted while waiting.
+   */
+  ExtractedBundle get() throws ExecutionException, InterruptedException {
+    task.run();
+    return task.get();
+  }
+
+  /**
+   * Wait for the bundle until the deadline expires. If the deadline is bounded and the extraction
+   * has not started yet, it is run in a new daemon thread. If the deadline expires, the bundle is
+   * given up and that thread is interrupted.
+   *
+   * @param deadline the deadline.
+   * @return the bundle.
+   * @throws ExecutionException if starting the extraction failed.
+   * @throws TurnkeyException if the deadline expires or the thread is interrupted while waiting.
+   */
+  ExtractedBundle get(final Deadline deadline) throws ExecutionException {
+    try {
+      if (!deadline.isBounded()) {
+        return get();
+      }
+      final Thread runner = new Thread(task, "turnkey-extract-" + libraryPrefix);
+      runner.setDaemon(true);
+      if (!task.isDone()) {
+        runner.start();
+      }
+      try {
+        return task.get(Math.max(0, deadline.remainingNanos()), NANOSECONDS);
+      } catch (final TimeoutException e) {
+        final Phase overrun = abandon();
+        runner.interrupt();
+        throw TurnKey.deadlineExceeded(
+            libraryPrefix, overrun.description, overrun.progress, deadline);
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TurnkeyException("Interrupted while waiting for unpacking of " + libraryPrefix, e);
+    }
+  }
+
+  /**
+   * Give up the bundle. It is aborted now if it is available, or as soon as it becomes available.
+   *
+   * @return the phase the extraction was in.
+   */
+  private Phase abandon() {
+    final Phase current;
+    synchronized (this) {
+      abandoned = true;
+      current = phase;
+    }
+    if (task.isDone()) {
+      abortIfAbandoned();
+    }
+    return current;
+  }
+
+  /** Abort the bundle if it has been given up, is available, and has not been aborted yet. */
+  private void abortIfAbandoned() {
+    synchronized (this) {
+      if (!abandoned || aborted) {
+        return;
+      }
+      aborted = true;
+    }
+    try {
+      task.get().abort();
+    } catch (final ExecutionException ignored) {
+      // nothing was created
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -19,13 +19,19 @@
 package tools.aqua.turnkey.support;
 
 import static java.nio.file.Files.createTempDirectory;
-import static java.nio.file.Files.newOutputStream;
-import static tools.aqua.turnkey.support.Utilities.copy;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import org.jspecify.annotations.Nullable;
 
@@ -35,11 +41,35 @@ public final class TurnKey {
   /** The conventional file name for turnkey metadata. */
   public static final String TURNKEY_FILE_NAME = "turnkey.xml";
 
+  /** The bundles loaded via {@link #load(String, Function)}, by library prefix. */
+  private static final Map<String, ExtractedBundle> LOADED_BUNDLES = new ConcurrentHashMap<>();
+
+  /** Extractions started ahead of time by the {@link TurnKeyAgent}, by library prefix. */
+  private static final Map<String, PendingExtraction> PREWARMED_BUNDLES =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Notified of every bundle whose extraction has started, including bundles that are given up and
+   * never loaded. Only replaced by tests.
+   */
+  static final AtomicReference<Consumer<ExtractedBundle>> EXTRACTION_LISTENER =
+      new AtomicReference<>(bundle -> {});
+
   /** This class should not be constructed. */
   private TurnKey() {
     throw new AssertionError();
   }
 
+  /**
+   * Get a bundle loaded via {@link #load(String, Function)}.
+   *
+   * @param libraryPrefix the library-specific prefix.
+   * @return the bundle, or {@code null} if it has not been loaded.
+   */
+  static @Nullable ExtractedBundle getLoadedBundle(final String libraryPrefix) {
+    return LOADED_BUNDLES.get(libraryPrefix);
+  }
+
   /**
    * Execute the unpack-and-load algorithm. In essence, this does
    *
@@ -51,6 +81,22 @@ public final class TurnKey {
    *   <li>Load the native libraries.
    * </ol>
    *
+   * <p>Unpacking and loading are pipelined: libraries are unpacked by a background thread and each
+   * library is loaded as soon as it and its predecessors are present. Files not referenced by a
+   * load command are unpacked first, since the loaded libraries may depend on them; the others
+   * follow in load order. This method returns only after all files have been unpacked.
+   *
+   * <p>Only the core libraries are unpacked and loaded. Optional groups declared in the metadata
+   * can be loaded later on using {@link #loadGroup(String, String, Function)}.
+   *
+   * <p>If the system property {@code tools.aqua.turnkey.cache-dir} names a directory, unpacked
+   * files are stored there once per content digest and linked into the load directory, so files
+   * shared between bundles or bundle versions are only written once. If the cache cannot be used,
+   * e.g., since it is not writable for the current user, files are unpacked as if it was not set.
+   *
+   * <p>If the {@link TurnKeyAgent} has already started unpacking the bundle, its result is used
+   * instead and only the loading step is performed here.
+   *
    * <p>This must be called before the first operation that uses native code (e.g., in a static
    * initializer).
    *
@@ -67,6 +113,297 @@ public final class TurnKey {
   public static void load(
       final String libraryPrefix,
       final Function<String, @Nullable InputStream> getResourceAsStream) {
+    load(libraryPrefix, getResourceAsStream, Deadline.NONE);
+  }
+
+  /**
+   * Execute the unpack-and-load algorithm as described in {@link #load(String, Function)}, but
+   * abort if it does not complete within the given time. The time limit covers reading the
+   * metadata, creating the load directory, unpacking (including waiting for other threads or
+   * processes, e.g., due to {@link ExtractionCache} locks or {@link ExtractionScheduler} limits)
+   * and loading. Loading a single library cannot be interrupted, so
+   * the limit is checked before each library is loaded.
+   *
+   * <p>If the time limit is exceeded, unpacking is cancelled and the files unpacked so far are
+   * deleted. The resulting exception names the phase that overran and the progress made in it, so
+   * that callers can fail fast instead of blocking, e.g., a static initializer indefinitely.
+   *
+   * @param libraryPrefix the library-specific prefix to use when loading files without leading or
+   *     terminal {@code /}. This is usually the package name of the library with {@code .} replaced
+   *     by {@code /}.
+   * @param getResourceAsStream the function to use for loading resources. This is necessary in case
+   *     of, e.g., modularity restrictions on the visibility of the metadata and libraries.
+   * @param timeout the maximum time to spend, must not be negative.
+   * @param unit the unit of {@code timeout}.
+   * @throws UnsupportedPlatformException if the current platform is not supported.
+   * @throws TurnkeyException if the time limit is exceeded.
+   * @throws TurnkeyException if library unpacking or linking fails.
+   * @throws TurnkeyException if the TurnKey library distribution is incomplete, indicating a
+   *     packaging error.
+   * @throws IllegalArgumentException if the timeout is negative.
+   */
+  public static void load(
+      final String libraryPrefix,
+      final Function<String, @Nullable InputStream> getResourceAsStream,
+      final long timeout,
+      final TimeUnit unit) {
+    load(libraryPrefix, getResourceAsStream, Deadline.after(timeout, unit));
+  }
+
+  /**
+   * Execute the unpack-and-load algorithm with the given deadline.
+   *
+   * @param libraryPrefix the library-specific prefix.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @param deadline the deadline.
+   * @throws UnsupportedPlatformException if the current platform is not supported.
+   * @throws TurnkeyException if the deadline expires or library unpacking or linking fails.
+   */
+  private static void load(
+      final String libraryPrefix,
+      final Function<String, @Nullable InputStream> getResourceAsStream,
+      final Deadline deadline) {
+    ExtractedBundle bundle = takePrewarmed(libraryPrefix, deadline);
+    if (bundle == null) {
+      try {
+        bundle = new PendingExtraction(libraryPrefix, getResourceAsStream).get(deadline);
+      } catch (final ExecutionException e) {
+        throw rethrow(e);
+      }
+    }
+
+    try {
+      loadLibraries(
+          libraryPrefix,
+          bundle.directory,
+          bundle.extraction,
+          bundle.metadata.loadCommands,
+          deadline);
+    } catch (final TurnkeyException e) {
+      if (deadline.isExpired()) {
+        bundle.abort();
+      }
+      throw e;
+    }
+
+    LOADED_BUNDLES.put(libraryPrefix, bundle);
+  }
+
+  /**
+   * Unpack and load an optional group of a bundle previously loaded via {@link #load(String,
+   * Function)}. The group's files are unpacked to the same directory as the core libraries, except
+   * for files already unpacked for the core libraries or a previously loaded group, since they may
+   * be in use. Loading a group more than once has no effect.
+   *
+   * @param libraryPrefix the library-specific prefix, as passed to {@link #load(String,
+   *     Function)}.
+   * @param group the name of the optional group to load.
+   * @param getResourceAsStream the function to use for loading resources. This is necessary in case
+   *     of, e.g., modularity restrictions on the visibility of the metadata and libraries.
+   * @throws UnsupportedPlatformException if the group is not available on the current platform.
+   * @throws TurnkeyException if the bundle's core libraries have not been loaded yet.
+   * @throws TurnkeyException if library unpacking or linking fails.
+   * @throws TurnkeyException if the TurnKey library distribution is incomplete, indicating a
+   *     packaging error.
+   */
+  // groups of the same bundle may be requested concurrently, but must be loaded at most once
+  @SuppressWarnings("PMD.AvoidSynchronizedStatement")
+  public static void loadGroup(
+      final String libraryPrefix,
+      final String group,
+      final Function<String, @Nullable InputStream> getResourceAsStream) {
+    final ExtractedBundle bundle = LOADED_BUNDLES.get(libraryPrefix);
+    if (bundle == null) {
+      throw new TurnkeyException(
+          "Bundle " + libraryPrefix + " must be loaded before loading group " + group);
+    }
+    final TurnKeyMetadata.OptionalGroup optionalGroup = bundle.metadata.optionalGroups.get(group);
+    if (optionalGroup == null) {
+      throw new UnsupportedPlatformException(
+          "No optional group " + group + " in " + bundle.platformPrefix);
+    }
+
+    synchronized (bundle) {
+      if (bundle.loadedGroups.contains(group)) {
+        return;
+      }
+      final Set<String> files = new HashSet<>(optionalGroup.bundledLibraries);
+      files.removeAll(bundle.unpackedFiles);
+      final Extraction extraction =
+          new Extraction(
+              bundle.platformPrefix,
+              bundle.directory,
+              files,
+              optionalGroup.loadCommands,
+              getResourceAsStream,
+              bundle.cache);
+      extraction.start(libraryPrefix + "-" + group);
+      loadLibraries(
+          libraryPrefix, bundle.directory, extraction, optionalGroup.loadCommands, Deadline.NONE);
+      bundle.unpackedFiles.addAll(files);
+      bundle.loadedGroups.add(group);
+    }
+  }
+
+  /**
+   * Register an extraction of a bundle that will be performed ahead of time. A later call to {@link
+   * #load(String, Function)} for the same prefix will use its result. If the extraction has not yet
+   * started at that point, it is performed by the loading thread instead. Only the first
+   * registration for a prefix is kept.
+   *
+   * @param libraryPrefix the library-specific prefix.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @return the extraction that must be run to unpack the bundle, or {@code null} if the bundle
+   *     is already loaded or registered.
+   */
+  static @Nullable PendingExtraction prewarm(
+      final String libraryPrefix,
+      final Function<String, @Nullable InputStream> getResourceAsStream) {
+    if (LOADED_BUNDLES.containsKey(libraryPrefix)) {
+      return null;
+    }
+    final PendingExtraction pending = new PendingExtraction(libraryPrefix, getResourceAsStream);
+    return PREWARMED_BUNDLES.putIfAbsent(libraryPrefix, pending) == null ? pending : null;
+  }
+
+  /**
+   * Retrieve the result of an ahead-of-time extraction for the given bundle, if any. If the
+   * extraction has not yet started, it is run in the calling thread (or, if the deadline is
+   * bounded, in a new thread); if it is running, this waits for its completion.
+   *
+   * @param libraryPrefix the library-specific prefix.
+   * @param deadline the deadline.
+   * @return the extracted bundle, or {@code null} if no ahead-of-time extraction was registered or
+   *     it failed before the first library could be loaded. In the latter case, the caller is
+   *     expected to retry the extraction itself, surfacing the failure with its own resource
+   *     loader.
+   * @throws TurnkeyException if the deadline expires.
+   */
+  private static @Nullable ExtractedBundle takePrewarmed(
+      final String libraryPrefix, final Deadline deadline) {
+    final PendingExtraction pending = PREWARMED_BUNDLES.remove(libraryPrefix);
+    if (pending == null) {
+      return null;
+    }
+
+    final ExtractedBundle bundle;
+    try {
+      bundle = pending.get(deadline);
+    } catch (final ExecutionException e) {
+      return null;
+    }
+
+    final List<String> loadCommands = bundle.metadata.loadCommands;
+    final boolean ready;
+    try {
+      ready =
+          loadCommands.isEmpty()
+              ? bundle.extraction.awaitAll(deadline)
+              : bundle.extraction.await(loadCommands.get(0), deadline);
+    } catch (final TurnkeyException e) {
+      return null;
+    }
+    if (!ready) {
+      bundle.abort();
+      throw deadlineExceeded(
+          libraryPrefix, "extraction", extractionProgress(bundle.extraction), deadline);
+    }
+    return bundle;
+  }
+
+  /**
+   * Load libraries in order while they are being unpacked. Each library is loaded as soon as it is
+   * present. This returns once all files of the extraction are unpacked.
+   *
+   * @param libraryPrefix the library-specific prefix, for error messages.
+   * @param directory the directory the libraries are unpacked to.
+   * @param extraction the running extraction.
+   * @param loadCommands the libraries to load, in order.
+   * @param deadline the deadline.
+   * @throws TurnkeyException if unpacking fails or the deadline expires.
+   */
+  private static void loadLibraries(
+      final String libraryPrefix,
+      final Path directory,
+      final Extraction extraction,
+      final List<String> loadCommands,
+      final Deadline deadline) {
+    int loaded = 0;
+    for (final String library : loadCommands) {
+      if (!extraction.await(library, deadline)) {
+        throw deadlineExceeded(
+            libraryPrefix, "extraction", extractionProgress(extraction), deadline);
+      }
+      if (deadline.isExpired()) {
+        throw deadlineExceeded(
+            libraryPrefix,
+            "loading",
+            "loaded " + loaded + " of " + loadCommands.size() + " libraries",
+            deadline);
+      }
+      System.load(directory.resolve(library).toAbsolutePath().toString());
+      loaded++;
+    }
+    if (!extraction.awaitAll(deadline)) {
+      throw deadlineExceeded(libraryPrefix, "extraction", extractionProgress(extraction), deadline);
+    }
+  }
+
+  /**
+   * Describe the progress of an extraction.
+   *
+   * @param extraction the extraction.
+   * @return a description of the progress.
+   */
+  private static String extractionProgress(final Extraction extraction) {
+    return "unpacked "
+        + extraction.getExtractedCount()
+        + " of "
+        + extraction.getFileCount()
+        + " files";
+  }
+
+  /**
+   * Create the exception reported for an expired deadline.
+   *
+   * @param libraryPrefix the library-specific prefix.
+   * @param phase the phase that overran.
+   * @param progress the progress made in the phase.
+   * @param deadline the deadline.
+   * @return the exception.
+   */
+  static TurnkeyException deadlineExceeded(
+      final String libraryPrefix,
+      final String phase,
+      final String progress,
+      final Deadline deadline) {
+    return new TurnkeyException(
+        "Loading "
+            + libraryPrefix
+            + " exceeded the "
+            + deadline.describe()
+            + " during "
+            + phase
+            + ": "
+            + progress);
+  }
+
+  /**
+   * Start unpacking the core libraries of a bundle for the current platform to a new temporary
+   * directory. The metadata is read and the directory is created in the calling thread, the
+   * libraries are unpacked in the background.
+   *
+   * @param libraryPrefix the library-specific prefix.
+   * @param getResourceAsStream the function to use for loading resources.
+   * @param enter notified when a phase is entered, used to report deadline overruns.
+   * @return the bundle being unpacked.
+   * @throws UnsupportedPlatformException if the current platform is not supported.
+   * @throws TurnkeyException if metadata loading or directory creation fails.
+   */
+  static ExtractedBundle extract(
+      final String libraryPrefix,
+      final Function<String, @Nullable InputStream> getResourceAsStream,
+      final Consumer<PendingExtraction.Phase> enter) {
     final OperatingSystem os = OperatingSystem.identify();
     final CPUArchitecture cpu = CPUArchitecture.identify();
     final PlatformPrefix platformPrefix = new PlatformPrefix(libraryPrefix, os, cpu);
@@ -74,17 +411,45 @@ public final class TurnKey {
     final TurnKeyMetadata metadata =
         getMetadata(platformPrefix.resolve(TURNKEY_FILE_NAME), getResourceAsStream);
 
-    final Path unpackedLibraryDir = getTemporaryLibraryDir();
-    for (final String bundledLibrary : metadata.bundledLibraries) {
-      unpackFile(
-          platformPrefix.resolve(bundledLibrary),
-          unpackedLibraryDir.resolve(bundledLibrary),
-          getResourceAsStream);
+    enter.accept(PendingExtraction.Phase.DIRECTORY);
+    ExtractionCache cache = ExtractionCache.getDefault();
+    Path unpackedLibraryDir = cache == null ? null : cache.createLoadDirectory();
+    if (unpackedLibraryDir == null) {
+      cache = null; // disabled or not usable by this user
+      unpackedLibraryDir = getTemporaryLibraryDir();
     }
+    final Extraction extraction =
+        new Extraction(
+            platformPrefix,
+            unpackedLibraryDir,
+            metadata.bundledLibraries,
+            metadata.loadCommands,
+            getResourceAsStream,
+            cache);
+    extraction.start(libraryPrefix);
+
+    final ExtractedBundle bundle =
+        new ExtractedBundle(platformPrefix, metadata, unpackedLibraryDir, extraction, cache);
+    EXTRACTION_LISTENER.get().accept(bundle);
+    return bundle;
+  }
 
-    for (final String library : metadata.loadCommands) {
-      System.load(unpackedLibraryDir.resolve(library).toAbsolutePath().toString());
+  /**
+   * Convert the failure of a {@link PendingExtraction} to the exception thrown by {@link
+   * #extract(String, Function, Consumer)}.
+   *
+   * @param e the failure.
+   * @return the original exception, to be thrown by the caller.
+   */
+  private static RuntimeException rethrow(final ExecutionException e) {
+    final Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
     }
+    return new TurnkeyException("Failed to unpack bundle", cause);
   }
 
   /**
@@ -124,31 +489,4 @@ public final class TurnKey {
       throw new TurnkeyException("Failed to create temporary directory", e);
     }
   }
-
-  /**
-   * Extract a single file to a given directory on the file system. The file will be scheduled for
-   * deletion on exit.
-   *
-   * @param source path to the file to extract.
-   * @param destination the target file to unpack to.
-   * @param getResourceAsStream the function to use for loading resources.
-   * @throws TurnkeyException if the named library does not exist or cannot be copied.
-   */
-  private static void unpackFile(
-      final String source,
-      final Path destination,
-      final Function<String, @Nullable InputStream> getResourceAsStream) {
-    destination.toFile().deleteOnExit();
-
-    try (InputStream libraryFile = getResourceAsStream.apply(source)) {
-      if (libraryFile == null) {
-        throw new TurnkeyException("Missing file at " + source + ", packaging error!");
-      }
-      try (OutputStream targetFile = newOutputStream(destination)) {
-        copy(libraryFile, targetFile);
-      }
-    } catch (IOException e) {
-      throw new TurnkeyException("Failed to unpack " + source, e);
-    }
-  }
 }
@@ -0,0 +1,381 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.io.File.pathSeparator;
+import static java.lang.System.getProperty;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.walk;
+import static tools.aqua.turnkey.support.TurnKey.TURNKEY_FILE_NAME;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A Java agent that unpacks TurnKey bundles in a background thread at JVM start. A later call to
+ * {@link TurnKey#load(String, Function)} then only needs to load the already unpacked libraries.
+ *
+ * <p>The agent is enabled by passing {@code -javaagent:<path to this library's JAR>} to the JVM.
+ * The agent argument is an optional comma-separated list of library prefixes to unpack, e.g.,
+ * {@code -javaagent:turnkey-support.jar=com/acme/example,com/acme/other}. If no prefixes are
+ * given, all bundles for the current platform found on the class path and module path are
+ * unpacked.
+ */
+// unpacking at JVM start must not delay the application, so it runs in a background thread
+@SuppressWarnings({"PMD.AvoidSynchronizedAtMethodLevel", "PMD.DoNotUseThreads"})
+public final class TurnKeyAgent {
+
+  /** The name of the background thread. */
+  private static final String THREAD_NAME = "turnkey-prewarm";
+
+  /** This class should not be constructed. */
+  private TurnKeyAgent() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The agent entry point. This starts the background extraction and returns immediately.
+   *
+   * @param agentArgs the agent arguments, i.e., a comma-separated list of library prefixes or
+   *     {@code null}.
+   */
+  public static void premain(final @Nullable String agentArgs) {
+    final List<String> prefixes = parsePrefixes(agentArgs);
+
+    final Runnable prewarm;
+    if (prefixes.isEmpty()) {
+      prewarm = TurnKeyAgent::prewarmDiscovered;
+    } else {
+      // register explicit prefixes immediately so an early load can pick them up, but only scan
+      // the class path and module path once the first bundle is unpacked
+      final Discovery discovery = new Discovery();
+      final Map<PendingExtraction, ResourceRoot> tasks = new LinkedHashMap<>();
+      for (final String prefix : prefixes) {
+        final ResourceRoot resources = new ResourceRoot(() -> discovery.find(prefix));
+        final PendingExtraction task = TurnKey.prewarm(prefix, resources);
+        if (task != null) {
+          tasks.put(task, resources);
+        }
+      }
+      prewarm = () -> tasks.forEach(TurnKeyAgent::runAndClose);
+    }
+
+    final Thread thread = new Thread(prewarm, THREAD_NAME);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Split the agent arguments into library prefixes.
+   *
+   * @param agentArgs the agent arguments, may be {@code null}.
+   * @return the non-empty prefixes, in order.
+   */
+  static List<String> parsePrefixes(final @Nullable String agentArgs) {
+    final List<String> prefixes = new ArrayList<>();
+    if (agentArgs != null) {
+      for (final String prefix : agentArgs.split(",")) {
+        final String trimmed = prefix.trim();
+        if (!trimmed.isEmpty()) {
+          prefixes.add(trimmed);
+        }
+      }
+    }
+    return prefixes;
+  }
+
+  /**
+   * Discover all bundles for the current platform and unpack them. Bundles are read directly from
+   * the archive or directory they were found in, so modularity restrictions do not apply.
+   */
+  private static void prewarmDiscovered() {
+    for (final Map.Entry<String, Path> bundle : discover().entrySet()) {
+      final Path root = bundle.getValue();
+      final ResourceRoot resources = new ResourceRoot(() -> root);
+      final PendingExtraction task = TurnKey.prewarm(bundle.getKey(), resources);
+      if (task != null) {
+        runAndClose(task, resources);
+      }
+    }
+  }
+
+  /**
+   * Run an extraction task, wait for it, and close its resource root afterward. An interrupt
+   * raised while waiting is cleared, so that it does not fail the next task.
+   *
+   * @param task the task to run.
+   * @param resources the resource root used by the task.
+   */
+  private static void runAndClose(final PendingExtraction task, final ResourceRoot resources) {
+    try {
+      runAndAwait(task);
+    } finally {
+      resources.close();
+      Thread.interrupted();
+    }
+  }
+
+  /**
+   * Run an extraction task and wait for all files to be unpacked, even if another thread is running
+   * it. Failures are ignored, since loading retries the extraction and reports them.
+   *
+   * @param task the task to run.
+   */
+  private static void runAndAwait(final PendingExtraction task) {
+    try {
+      task.get().extraction.awaitAll();
+    } catch (final ExecutionException | TurnkeyException ignored) {
+      // reported by the loading thread
+    } catch (final InterruptedException ignored) {
+      // the next task starts with a cleared interrupt
+    }
+  }
+
+  /**
+   * Find all bundles for the current platform on the class path and the module path.
+   *
+   * @return a map from library prefix to the archive or directory containing the bundle, empty if
+   *     the current platform is not supported.
+   */
+  private static Map<String, Path> discover() {
+    try {
+      return discover(
+          OperatingSystem.identify(),
+          CPUArchitecture.identify(),
+          getPathProperty("java.class.path"),
+          getPathProperty("jdk.module.path"));
+    } catch (final UnsupportedPlatformException e) {
+      return new LinkedHashMap<>(); // nothing to prewarm, loading will report the error
+    }
+  }
+
+  /**
+   * Find all bundles for the given platform on a class path and a module path.
+   *
+   * @param os the operating system.
+   * @param cpu the CPU architecture.
+   * @param classPath the class path entries, i.e., archives and directories.
+   * @param modulePath the module path entries, i.e., modular archives, exploded modules, and
+   *     directories of modules.
+   * @return a map from library prefix to the archive or directory containing the bundle. If a
+   *     prefix is found more than once, the first entry is kept, with the class path preceding the
+   *     module path.
+   */
+  static Map<String, Path> discover(
+      final OperatingSystem os,
+      final CPUArchitecture cpu,
+      final List<Path> classPath,
+      final List<Path> modulePath) {
+    final String suffix = "/" + os.name + "/" + cpu.name + "/" + TURNKEY_FILE_NAME;
+    final Map<String, Path> bundles = new LinkedHashMap<>();
+
+    for (final Path root : classPath) {
+      scan(root, suffix, bundles);
+    }
+    for (final Path root : modulePath) {
+      if (isDirectory(root) && !isExplodedModule(root)) {
+        // a directory of modules
+        try (DirectoryStream<Path> modules = newDirectoryStream(root)) {
+          for (final Path module : modules) {
+            scan(module, suffix, bundles);
+          }
+        } catch (final IOException ignored) {
+          // ignore unreadable module directories
+        }
+      } else {
+        scan(root, suffix, bundles);
+      }
+    }
+
+    return bundles;
+  }
+
+  /**
+   * Split a path-list system property into its components.
+   *
+   * @param key the property key.
+   * @return the paths, empty if the property is undefined.
+   */
+  private static List<Path> getPathProperty(final String key) {
+    final List<Path> paths = new ArrayList<>();
+    final String value = getProperty(key);
+    if (value != null) {
+      for (final String element : value.split(pathSeparator)) {
+        if (!element.isEmpty()) {
+          paths.add(Paths.get(element));
+        }
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Check if a module path directory is an exploded module instead of a directory of modules.
+   *
+   * @param directory the directory to check.
+   * @return {@code true} iff the directory contains a module descriptor.
+   */
+  private static boolean isExplodedModule(final Path directory) {
+    return isRegularFile(directory.resolve("module-info.class"));
+  }
+
+  /**
+   * Scan an archive or directory for bundle metadata files.
+   *
+   * @param root the archive or directory to scan.
+   * @param suffix the platform-specific metadata path suffix, starting with {@code /}.
+   * @param bundles the map to add discovered bundles to. Already discovered prefixes are kept.
+   */
+  private static void scan(final Path root, final String suffix, final Map<String, Path> bundles) {
+    final List<String> names = new ArrayList<>();
+    try {
+      if (isRegularFile(root)) {
+        try (ZipFile zip = new ZipFile(root.toFile())) {
+          for (final Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+            names.add(e.nextElement().getName());
+          }
+        }
+      } else if (isDirectory(root)) {
+        try (Stream<Path> files = walk(root)) {
+          files
+              .filter(file -> isRegularFile(file))
+              .map(file -> root.relativize(file).toString().replace('\\', '/'))
+              .forEach(names::add);
+        }
+      }
+    } catch (final IOException | UncheckedIOException e) {
+      return; // ignore unreadable entries, just like the class loader
+    }
+
+    for (final String name : names) {
+      if (name.endsWith(suffix) && name.length() > suffix.length()) {
+        bundles.putIfAbsent(name.substring(0, name.length() - suffix.length()), root);
+      }
+    }
+  }
+
+  /** The bundle locations for explicitly configured prefixes, discovered on first use. */
+  private static final class Discovery {
+    /** The discovered bundles, {@code null} until the first lookup. */
+    private @Nullable Map<String, Path> bundles;
+
+    /**
+     * Find the archive or directory containing a bundle.
+     *
+     * @param libraryPrefix the library-specific prefix.
+     * @return the archive or directory, or {@code null} if the bundle was not discovered.
+     */
+    synchronized @Nullable Path find(final String libraryPrefix) {
+      Map<String, Path> discovered = bundles;
+      if (discovered == null) {
+        discovered = discover();
+        bundles = discovered;
+      }
+      return discovered.get(libraryPrefix);
+    }
+  }
+
+  /**
+   * Resource access for an archive or directory, using absolute resource names. The archive or
+   * directory is located and opened on first access. If it cannot be located, resources are loaded
+   * using the system class loader instead.
+   */
+  private static final class ResourceRoot
+      implements Function<String, @Nullable InputStream>, Closeable {
+    /** Locates the archive or directory. */
+    private final Supplier<@Nullable Path> locator;
+
+    /** If the archive or directory has been located. */
+    private boolean located;
+
+    /** The archive or directory, or {@code null} if not located. */
+    private @Nullable Path root;
+
+    /** The opened archive, or {@code null} if {@link #root} is a directory or not located. */
+    private @Nullable ZipFile archive;
+
+    /**
+     * Create a resource root that is located lazily.
+     *
+     * @param locator the {@link #locator}.
+     */
+    ResourceRoot(final Supplier<@Nullable Path> locator) {
+      this.locator = locator;
+    }
+
+    @Override
+    public synchronized @Nullable InputStream apply(final String name) {
+      try {
+        if (!located) {
+          located = true;
+          root = locator.get();
+          if (root != null && !isDirectory(root)) {
+            archive = new ZipFile(root.toFile());
+          }
+        }
+
+        final String relative = name.startsWith("/") ? name.substring(1) : name;
+        if (archive != null) {
+          final ZipEntry entry = archive.getEntry(relative);
+          return entry == null ? null : archive.getInputStream(entry);
+        }
+        if (root != null) {
+          final Path file = root.resolve(relative);
+          return isRegularFile(file) ? newInputStream(file) : null;
+        }
+        return ClassLoader.getSystemResourceAsStream(relative);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /** Close the archive, if opened. Failures are ignored, since all reads are complete. */
+    @Override
+    public synchronized void close() {
+      if (archive != null) {
+        try {
+          archive.close();
+        } catch (final IOException ignored) {
+          // nothing to recover
+        }
+        archive = null;
+      }
+    }
+  }
+}
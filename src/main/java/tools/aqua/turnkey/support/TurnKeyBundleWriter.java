@@ -0,0 +1,408 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+import static tools.aqua.turnkey.support.TurnKey.TURNKEY_FILE_NAME;
+import static tools.aqua.turnkey.support.Utilities.copy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes TurnKey bundles as JAR files. For each platform, the metadata file is written together
+ * with the libraries it references (including optional groups). Libraries are written as
+ * uncompressed ({@link ZipEntry#STORED}) entries whose data starts at a multiple of the alignment
+ * (by default, the page size), using the same padding technique as Android's {@code zipalign}.
+ * This permits loaders to transfer or map library data straight from the archive.
+ *
+ * <p>The resulting JAR contains only the bundle. Merging it into another JAR using tools that
+ * rewrite entries may destroy the alignment.
+ */
+public final class TurnKeyBundleWriter {
+
+  /** The default alignment for library data, the most common page size. */
+  public static final int DEFAULT_ALIGNMENT = 4096;
+
+  /**
+   * The largest supported alignment. The padding of an entry may be almost as large as the
+   * alignment, and the extra field holding it must not exceed 65535 bytes.
+   */
+  public static final int MAX_ALIGNMENT = 32768;
+
+  /** The extra field ID used for alignment padding, as defined by {@code zipalign}. */
+  static final int ALIGNMENT_EXTRA_ID = 0xD935;
+
+  /** The size of the fixed part of a local file header. */
+  private static final int LOCAL_HEADER_SIZE = 30;
+
+  /** The size of the alignment extra field without padding (ID, length, and alignment value). */
+  private static final int ALIGNMENT_EXTRA_SIZE = 6;
+
+  /** The fixed modification time used for all entries to make the output reproducible. */
+  private static final long ENTRY_TIME = 315_532_800_000L + 86_400_000L; // 1980-01-02 UTC
+
+  /** The library-specific prefix without leading or terminal {@code /}. */
+  private final String libraryPrefix;
+
+  /** The alignment for library data in bytes. */
+  private final int alignment;
+
+  /** The platforms added so far, in order. */
+  private final List<Platform> platforms = new ArrayList<>();
+
+  /**
+   * Create a new writer using the {@link #DEFAULT_ALIGNMENT}.
+   *
+   * @param libraryPrefix the library-specific prefix without leading or terminal {@code /}. This is
+   *     usually the package name of the library with {@code .} replaced by {@code /}.
+   */
+  public TurnKeyBundleWriter(final String libraryPrefix) {
+    this(libraryPrefix, DEFAULT_ALIGNMENT);
+  }
+
+  /**
+   * Create a new writer.
+   *
+   * @param libraryPrefix the library-specific prefix without leading or terminal {@code /}. This is
+   *     usually the package name of the library with {@code .} replaced by {@code /}.
+   * @param alignment the alignment for library data in bytes, a power of two of at most {@link
+   *     #MAX_ALIGNMENT}.
+   * @throws IllegalArgumentException if the alignment is not a power of two or too large.
+   */
+  public TurnKeyBundleWriter(final String libraryPrefix, final int alignment) {
+    if (alignment < 1 || alignment > MAX_ALIGNMENT || Integer.bitCount(alignment) != 1) {
+      throw new IllegalArgumentException(
+          "alignment must be a power of two of at most " + MAX_ALIGNMENT + ": " + alignment);
+    }
+    this.libraryPrefix = libraryPrefix;
+    this.alignment = alignment;
+  }
+
+  /**
+   * Add a platform to the bundle. All files referenced by the metadata are read from the given
+   * directory when the bundle is written.
+   *
+   * @param os the operating system name as used in the bundle layout, e.g., {@code linux}.
+   * @param arch the CPU architecture name as used in the bundle layout, e.g., {@code amd64}.
+   * @param metadata the platform's metadata.
+   * @param libraryDirectory the directory containing the platform's library files.
+   * @return this writer.
+   * @throws IllegalArgumentException if the platform is unknown or was already added.
+   */
+  public TurnKeyBundleWriter addPlatform(
+      final String os,
+      final String arch,
+      final TurnKeyMetadata metadata,
+      final Path libraryDirectory) {
+    final OperatingSystem operatingSystem = OperatingSystem.fromName(os);
+    if (operatingSystem == null) {
+      throw new IllegalArgumentException("Unknown operating system: " + os);
+    }
+    final CPUArchitecture cpu = CPUArchitecture.fromName(arch);
+    if (cpu == null) {
+      throw new IllegalArgumentException("Unknown CPU architecture: " + arch);
+    }
+    final PlatformPrefix prefix = new PlatformPrefix(libraryPrefix, operatingSystem, cpu);
+    for (final Platform platform : platforms) {
+      if (platform.prefix.equals(prefix)) {
+        throw new IllegalArgumentException("Platform already added: " + prefix);
+      }
+    }
+    platforms.add(new Platform(prefix, metadata, libraryDirectory));
+    return this;
+  }
+
+  /**
+   * Write the bundle to a file.
+   *
+   * @param jar the JAR file to create or overwrite.
+   * @throws IOException if reading a library or writing fails.
+   */
+  public void writeTo(final Path jar) throws IOException {
+    try (OutputStream out = newOutputStream(jar)) {
+      writeTo(out);
+    }
+  }
+
+  /**
+   * Write the bundle to a stream. Alignment is computed relative to the first byte written. The
+   * platforms are prepared in parallel, i.e., their metadata is serialized and the libraries'
+   * checksums are computed concurrently. The archive itself is written sequentially.
+   *
+   * @param out the stream to write to. It is not closed.
+   * @throws IOException if reading a library or writing fails.
+   */
+  public void writeTo(final OutputStream out) throws IOException {
+    final List<PreparedPlatform> prepared = prepareAll();
+
+    final CountingOutputStream counter = new CountingOutputStream(out);
+    final ZipOutputStream zip = new ZipOutputStream(counter, UTF_8);
+    for (final PreparedPlatform platform : prepared) {
+      final ZipEntry metadataEntry =
+          new ZipEntry(platform.prefix.resolve(TURNKEY_FILE_NAME).substring(1));
+      metadataEntry.setTime(ENTRY_TIME);
+      zip.putNextEntry(metadataEntry);
+      zip.write(platform.metadata);
+      zip.closeEntry();
+
+      for (final PreparedFile file : platform.files) {
+        final String name = platform.prefix.resolve(file.name).substring(1);
+        final long extraOffset = counter.count + LOCAL_HEADER_SIZE + name.getBytes(UTF_8).length;
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setTime(ENTRY_TIME);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(file.size);
+        entry.setCompressedSize(file.size);
+        entry.setCrc(file.crc);
+        entry.setExtra(alignmentExtra(extraOffset));
+        zip.putNextEntry(entry);
+        try (InputStream in = newInputStream(file.source)) {
+          copy(in, zip);
+        }
+        zip.closeEntry();
+      }
+    }
+    zip.finish();
+  }
+
+  /**
+   * Create the alignment extra field for an entry.
+   *
+   * @param extraOffset the offset in the output at which the extra field will be written.
+   * @return the extra field, padded so that the entry data starts at an aligned offset.
+   */
+  private byte[] alignmentExtra(final long extraOffset) {
+    final long unpadded = extraOffset + ALIGNMENT_EXTRA_SIZE;
+    final int padding = (int) ((alignment - unpadded % alignment) % alignment);
+    final int dataSize = ALIGNMENT_EXTRA_SIZE - 4 + padding;
+    final byte[] extra = new byte[ALIGNMENT_EXTRA_SIZE + padding];
+    extra[0] = (byte) ALIGNMENT_EXTRA_ID;
+    extra[1] = (byte) (ALIGNMENT_EXTRA_ID >>> 8);
+    extra[2] = (byte) dataSize;
+    extra[3] = (byte) (dataSize >>> 8);
+    extra[4] = (byte) alignment;
+    extra[5] = (byte) (alignment >>> 8);
+    return extra;
+  }
+
+  /**
+   * Prepare all platforms in parallel.
+   *
+   * @return the prepared platforms, in the order they were added.
+   * @throws IOException if reading a library fails.
+   */
+  // preparing platforms is independent and CPU-bound, so it is worth a short-lived pool
+  @SuppressWarnings("PMD.DoNotUseThreads")
+  private List<PreparedPlatform> prepareAll() throws IOException {
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, Math.min(platforms.size(), Runtime.getRuntime().availableProcessors())));
+    try {
+      final List<Future<PreparedPlatform>> futures = new ArrayList<>();
+      for (final Platform platform : platforms) {
+        futures.add(executor.submit(platform::prepare));
+      }
+      final List<PreparedPlatform> prepared = new ArrayList<>();
+      for (final Future<PreparedPlatform> future : futures) {
+        prepared.add(future.get());
+      }
+      return prepared;
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new TurnkeyException("Failed to prepare bundle " + libraryPrefix, e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TurnkeyException("Interrupted while preparing bundle " + libraryPrefix, e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** A platform added to the bundle. */
+  private static final class Platform {
+    /** The resolved platform prefix. */
+    final PlatformPrefix prefix;
+
+    /** The platform's metadata. */
+    final TurnKeyMetadata metadata;
+
+    /** The directory containing the library files. */
+    final Path libraryDirectory;
+
+    /**
+     * Create a new platform record.
+     *
+     * @param prefix the {@link #prefix}.
+     * @param metadata the {@link #metadata}.
+     * @param libraryDirectory the {@link #libraryDirectory}.
+     */
+    Platform(
+        final PlatformPrefix prefix, final TurnKeyMetadata metadata, final Path libraryDirectory) {
+      this.prefix = prefix;
+      this.metadata = metadata;
+      this.libraryDirectory = libraryDirectory;
+    }
+
+    /**
+     * Serialize the metadata and compute the size and checksum of every referenced file.
+     *
+     * @return the prepared platform.
+     * @throws IOException if reading a library fails.
+     */
+    PreparedPlatform prepare() throws IOException {
+      final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+      metadata.writeTo(serialized);
+
+      final Set<String> names = new LinkedHashSet<>(metadata.bundledLibraries);
+      for (final TurnKeyMetadata.OptionalGroup group : metadata.optionalGroups.values()) {
+        names.addAll(group.bundledLibraries);
+      }
+      final List<PreparedFile> files = new ArrayList<>();
+      for (final String name : names) {
+        files.add(PreparedFile.of(name, libraryDirectory.resolve(name)));
+      }
+      return new PreparedPlatform(prefix, serialized.toByteArray(), files);
+    }
+  }
+
+  /** A platform ready to be written. */
+  private static final class PreparedPlatform {
+    /** The resolved platform prefix. */
+    final PlatformPrefix prefix;
+
+    /** The serialized metadata. */
+    final byte[] metadata;
+
+    /** The library files, in order. */
+    final List<PreparedFile> files;
+
+    /**
+     * Create a new prepared platform record.
+     *
+     * @param prefix the {@link #prefix}.
+     * @param metadata the {@link #metadata}, not copied.
+     * @param files the {@link #files}, not copied.
+     */
+    PreparedPlatform(
+        final PlatformPrefix prefix, final byte[] metadata, final List<PreparedFile> files) {
+      this.prefix = prefix;
+      this.metadata = metadata;
+      this.files = files;
+    }
+  }
+
+  /** A library file with its precomputed size and checksum, as required for stored entries. */
+  private static final class PreparedFile {
+    /** The file name relative to the platform prefix. */
+    final String name;
+
+    /** The file to read the content from. */
+    final Path source;
+
+    /** The file size. */
+    final long size;
+
+    /** The CRC-32 checksum of the content. */
+    final long crc;
+
+    /**
+     * Create a new prepared file record.
+     *
+     * @param name the {@link #name}.
+     * @param source the {@link #source}.
+     * @param size the {@link #size}.
+     * @param crc the {@link #crc}.
+     */
+    private PreparedFile(final String name, final Path source, final long size, final long crc) {
+      this.name = name;
+      this.source = source;
+      this.size = size;
+      this.crc = crc;
+    }
+
+    /**
+     * Read a file and compute its size and checksum.
+     *
+     * @param name the file name relative to the platform prefix.
+     * @param source the file to read.
+     * @return the prepared file.
+     * @throws IOException if reading fails.
+     */
+    static PreparedFile of(final String name, final Path source) throws IOException {
+      final CRC32 crc = new CRC32();
+      final byte[] buffer = new byte[1 << 16];
+      long size = 0;
+      try (InputStream in = newInputStream(source)) {
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+          crc.update(buffer, 0, read);
+          size += read;
+        }
+      }
+      return new PreparedFile(name, source, size, crc.getValue());
+    }
+  }
+
+  /** An output stream that counts the bytes written to the underlying stream. */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    /** The number of bytes written so far. */
+    long count;
+
+    /**
+     * Wrap a stream.
+     *
+     * @param out the underlying stream.
+     */
+    CountingOutputStream(final OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
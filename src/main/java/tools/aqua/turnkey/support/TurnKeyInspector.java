@@ -0,0 +1,459 @@
+/*
+ * SPDX-License-Identifier: ISC
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createTempDirectory;
+import static java.util.Arrays.copyOf;
+import static tools.aqua.turnkey.support.TurnKey.TURNKEY_FILE_NAME;
+import static tools.aqua.turnkey.support.Utilities.deleteRecursively;
+import static tools.aqua.turnkey.support.Utilities.sha256;
+import static tools.aqua.turnkey.support.Utilities.toHex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A command line tool that reports the TurnKey bundles contained in a JAR file as JSON. For every
+ * bundle prefix and platform, it lists the parsed metadata, the compressed and uncompressed sizes
+ * of the bundled files, and the time taken to unpack the platform's core libraries on this machine.
+ * Additionally, files with identical content across platforms are reported per bundle.
+ *
+ * <p>Usage: {@code java -cp turnkey-support.jar tools.aqua.turnkey.support.TurnKeyInspector
+ * [--no-extract] <jar>}. The {@code --no-extract} option skips the extraction measurement.
+ */
+public final class TurnKeyInspector {
+
+  /** The exit code for invalid arguments. */
+  private static final int EXIT_USAGE = 2;
+
+  /** The exit code for I/O failures. */
+  private static final int EXIT_FAILURE = 1;
+
+  /** This class should not be constructed. */
+  private TurnKeyInspector() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The command line entry point.
+   *
+   * @param args the command line arguments.
+   */
+  // command line entry point, reporting via the standard streams and the exit code
+  @SuppressWarnings({"PMD.DoNotTerminateVM", "PMD.SystemPrintln"})
+  public static void main(final String[] args) {
+    boolean measureExtraction = true;
+    final List<String> files = new ArrayList<>();
+    for (final String arg : args) {
+      if ("--no-extract".equals(arg)) {
+        measureExtraction = false;
+      } else {
+        files.add(arg);
+      }
+    }
+    if (files.size() != 1) {
+      System.err.println("Usage: TurnKeyInspector [--no-extract] <jar>");
+      System.exit(EXIT_USAGE);
+    }
+
+    final Map<String, Object> report;
+    try (ZipFile jar = new ZipFile(files.get(0))) {
+      report = inspect(jar, measureExtraction);
+    } catch (final IOException | UncheckedIOException | TurnkeyException e) {
+      System.err.println("Failed to inspect " + files.get(0) + ": " + e.getMessage());
+      System.exit(EXIT_FAILURE);
+      return;
+    }
+
+    final PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, UTF_8));
+    out.println(toJson(report, ""));
+    out.flush();
+  }
+
+  /**
+   * Create a report for all TurnKey bundles in a JAR file.
+   *
+   * @param jar the JAR file.
+   * @param measureExtraction if the extraction time should be measured.
+   * @return the report as a JSON-like tree of maps, collections, strings, and numbers.
+   * @throws IOException if reading the JAR or extraction fails.
+   */
+  static Map<String, Object> inspect(final ZipFile jar, final boolean measureExtraction)
+      throws IOException {
+    final Map<String, List<PlatformInfo>> platformsByPrefix = new TreeMap<>();
+    for (final Enumeration<? extends ZipEntry> e = jar.entries(); e.hasMoreElements(); ) {
+      final PlatformInfo platform = PlatformInfo.parse(e.nextElement().getName());
+      if (platform != null) {
+        platformsByPrefix
+            .computeIfAbsent(platform.libraryPrefix, k -> new ArrayList<>())
+            .add(platform);
+      }
+    }
+
+    final List<Object> bundles = new ArrayList<>();
+    for (final Map.Entry<String, List<PlatformInfo>> bundle : platformsByPrefix.entrySet()) {
+      bundles.add(inspectBundle(jar, bundle.getKey(), bundle.getValue(), measureExtraction));
+    }
+
+    final Map<String, Object> report = new LinkedHashMap<>();
+    report.put("jar", jar.getName());
+    report.put("bundles", bundles);
+    return report;
+  }
+
+  /**
+   * Create the report for a single bundle prefix.
+   *
+   * @param jar the JAR file.
+   * @param libraryPrefix the bundle prefix.
+   * @param platforms the platforms present for the bundle.
+   * @param measureExtraction if the extraction time should be measured.
+   * @return the report.
+   * @throws IOException if reading the JAR or extraction fails.
+   */
+  private static Map<String, Object> inspectBundle(
+      final ZipFile jar,
+      final String libraryPrefix,
+      final List<PlatformInfo> platforms,
+      final boolean measureExtraction)
+      throws IOException {
+    final Map<String, Set<String>> filesByDigest = new TreeMap<>();
+    final Map<String, Long> sizeByDigest = new LinkedHashMap<>();
+    final List<Object> platformReports = new ArrayList<>();
+    long compressedSize = 0;
+    long uncompressedSize = 0;
+
+    for (final PlatformInfo platform : platforms) {
+      final TurnKeyMetadata metadata = readMetadata(jar, platform);
+      final List<Object> fileReports = new ArrayList<>();
+      long platformCompressed = 0;
+      long platformUncompressed = 0;
+
+      for (final String file : allFiles(metadata)) {
+        final Map<String, Object> fileReport = new LinkedHashMap<>();
+        fileReport.put("name", file);
+        final ZipEntry entry = jar.getEntry(platform.prefix.resolve(file).substring(1));
+        if (entry == null) {
+          fileReport.put("missing", true);
+        } else {
+          final String digest = digest(jar, entry);
+          fileReport.put("method", entry.getMethod() == ZipEntry.STORED ? "stored" : "deflated");
+          fileReport.put("compressedSize", entry.getCompressedSize());
+          fileReport.put("uncompressedSize", entry.getSize());
+          fileReport.put("sha256", digest);
+          platformCompressed += entry.getCompressedSize();
+          platformUncompressed += entry.getSize();
+          filesByDigest
+              .computeIfAbsent(digest, k -> new LinkedHashSet<>())
+              .add(platform.os.name + "/" + platform.cpu.name + "/" + file);
+          sizeByDigest.put(digest, entry.getSize());
+        }
+        fileReports.add(fileReport);
+      }
+
+      final Map<String, Object> platformReport = new LinkedHashMap<>();
+      platformReport.put("os", platform.os.name);
+      platformReport.put("arch", platform.cpu.name);
+      platformReport.put("metadata", metadataReport(metadata));
+      platformReport.put("files", fileReports);
+      platformReport.put("compressedSize", platformCompressed);
+      platformReport.put("uncompressedSize", platformUncompressed);
+      if (measureExtraction) {
+        platformReport.put("extractionNanos", measureExtraction(jar, platform, metadata));
+      }
+      platformReports.add(platformReport);
+      compressedSize += platformCompressed;
+      uncompressedSize += platformUncompressed;
+    }
+
+    final List<Object> duplicates = new ArrayList<>();
+    long duplicatedBytes = 0;
+    for (final Map.Entry<String, Set<String>> group : filesByDigest.entrySet()) {
+      if (group.getValue().size() > 1) {
+        final long size = sizeByDigest.get(group.getKey());
+        final Map<String, Object> duplicate = new LinkedHashMap<>();
+        duplicate.put("sha256", group.getKey());
+        duplicate.put("size", size);
+        duplicate.put("files", group.getValue());
+        duplicates.add(duplicate);
+        duplicatedBytes += size * (group.getValue().size() - 1);
+      }
+    }
+
+    final Map<String, Object> report = new LinkedHashMap<>();
+    report.put("prefix", libraryPrefix);
+    report.put("platforms", platformReports);
+    report.put("compressedSize", compressedSize);
+    report.put("uncompressedSize", uncompressedSize);
+    report.put("duplicates", duplicates);
+    report.put("duplicatedBytes", duplicatedBytes);
+    return report;
+  }
+
+  /**
+   * Read a platform's metadata file using the library's parser.
+   *
+   * @param jar the JAR file.
+   * @param platform the platform.
+   * @return the metadata.
+   * @throws IOException if reading fails.
+   */
+  private static TurnKeyMetadata readMetadata(final ZipFile jar, final PlatformInfo platform)
+      throws IOException {
+    final ZipEntry entry = jar.getEntry(platform.prefix.resolve(TURNKEY_FILE_NAME).substring(1));
+    try (InputStream inputStream = jar.getInputStream(entry)) {
+      return TurnKeyMetadata.loadFrom(inputStream);
+    }
+  }
+
+  /**
+   * Collect all files referenced by a metadata file, including optional groups.
+   *
+   * @param metadata the metadata.
+   * @return the file names.
+   */
+  private static Set<String> allFiles(final TurnKeyMetadata metadata) {
+    final Set<String> files = new LinkedHashSet<>(metadata.bundledLibraries);
+    for (final TurnKeyMetadata.OptionalGroup group : metadata.optionalGroups.values()) {
+      files.addAll(group.bundledLibraries);
+    }
+    return files;
+  }
+
+  /**
+   * Convert metadata to a report.
+   *
+   * @param metadata the metadata.
+   * @return the report.
+   */
+  private static Map<String, Object> metadataReport(final TurnKeyMetadata metadata) {
+    final Map<String, Object> groups = new LinkedHashMap<>();
+    for (final Map.Entry<String, TurnKeyMetadata.OptionalGroup> group :
+        metadata.optionalGroups.entrySet()) {
+      final Map<String, Object> groupReport = new LinkedHashMap<>();
+      groupReport.put("bundledLibraries", group.getValue().bundledLibraries);
+      groupReport.put("loadCommands", group.getValue().loadCommands);
+      groups.put(group.getKey(), groupReport);
+    }
+
+    final Map<String, Object> report = new LinkedHashMap<>();
+    report.put("bundledLibraries", metadata.bundledLibraries);
+    report.put("systemLibraries", metadata.systemLibraries);
+    report.put("loadCommands", metadata.loadCommands);
+    report.put("optionalGroups", groups);
+    return report;
+  }
+
+  /**
+   * Compute the SHA-256 digest of a JAR entry's content.
+   *
+   * @param jar the JAR file.
+   * @param entry the entry.
+   * @return the hex-encoded digest.
+   * @throws IOException if reading fails.
+   */
+  private static String digest(final ZipFile jar, final ZipEntry entry) throws IOException {
+    final MessageDigest digest = sha256();
+    try (InputStream in = new DigestInputStream(jar.getInputStream(entry), digest)) {
+      final byte[] buffer = new byte[1 << 13];
+      int read;
+      do {
+        read = in.read(buffer); // only digest the content
+      } while (read >= 0);
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Measure the time taken to unpack the core libraries of a platform to a temporary directory,
+   * using the same code path as {@link TurnKey#load(String, java.util.function.Function)}. The
+   * directory is deleted afterward.
+   *
+   * @param jar the JAR file.
+   * @param platform the platform.
+   * @param metadata the platform's metadata.
+   * @return the extraction time in nanoseconds.
+   * @throws IOException if the temporary directory cannot be created or deleted.
+   * @throws TurnkeyException if extraction fails.
+   */
+  private static long measureExtraction(
+      final ZipFile jar, final PlatformInfo platform, final TurnKeyMetadata metadata)
+      throws IOException {
+    final Path directory = createTempDirectory("turnkey-inspect");
+    try {
+      final Extraction extraction =
+          new Extraction(
+              platform.prefix,
+              directory,
+              metadata.bundledLibraries,
+              metadata.loadCommands,
+              name -> {
+                final ZipEntry entry = jar.getEntry(name.substring(1));
+                try {
+                  return entry == null ? null : jar.getInputStream(entry);
+                } catch (final IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              },
+              null);
+      final long start = System.nanoTime();
+      extraction.run();
+      extraction.awaitAll();
+      return System.nanoTime() - start;
+    } finally {
+      deleteRecursively(directory);
+    }
+  }
+
+  /**
+   * Serialize a report tree to indented JSON.
+   *
+   * @param value a map, collection, string, number, or boolean.
+   * @param indent the current indentation.
+   * @return the JSON representation.
+   */
+  static String toJson(final @Nullable Object value, final String indent) {
+    final String inner = indent + "  ";
+    if (value instanceof Map) {
+      final Map<?, ?> map = (Map<?, ?>) value;
+      if (map.isEmpty()) {
+        return "{}";
+      }
+      final StringBuilder json = new StringBuilder("{\n");
+      String separator = "";
+      for (final Map.Entry<?, ?> entry : map.entrySet()) {
+        json.append(separator)
+            .append(inner)
+            .append(quote(String.valueOf(entry.getKey())))
+            .append(": ")
+            .append(toJson(entry.getValue(), inner));
+        separator = ",\n";
+      }
+      return json.append('\n').append(indent).append('}').toString();
+    } else if (value instanceof Collection) {
+      final Collection<?> collection = (Collection<?>) value;
+      if (collection.isEmpty()) {
+        return "[]";
+      }
+      final StringBuilder json = new StringBuilder("[\n");
+      String separator = "";
+      for (final Object element : collection) {
+        json.append(separator).append(inner).append(toJson(element, inner));
+        separator = ",\n";
+      }
+      return json.append('\n').append(indent).append(']').toString();
+    } else if (value instanceof Number || value instanceof Boolean) {
+      return value.toString();
+    } else if (value == null) {
+      return "null";
+    } else {
+      return quote(value.toString());
+    }
+  }
+
+  /**
+   * Quote and escape a JSON string.
+   *
+   * @param string the string.
+   * @return the JSON string literal.
+   */
+  private static String quote(final String string) {
+    final StringBuilder json = new StringBuilder("\"");
+    for (final char c : string.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < ' ') {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"').toString();
+  }
+
+  /** A platform-specific part of a bundle, identified by the location of its metadata file. */
+  private static final class PlatformInfo {
+    /** The bundle prefix. */
+    final String libraryPrefix;
+
+    /** The operating system. */
+    final OperatingSystem os;
+
+    /** The CPU architecture. */
+    final CPUArchitecture cpu;
+
+    /** The resolved platform prefix. */
+    final PlatformPrefix prefix;
+
+    /**
+     * Create a new platform record.
+     *
+     * @param libraryPrefix the {@link #libraryPrefix}.
+     * @param os the {@link #os}.
+     * @param cpu the {@link #cpu}.
+     */
+    private PlatformInfo(
+        final String libraryPrefix, final OperatingSystem os, final CPUArchitecture cpu) {
+      this.libraryPrefix = libraryPrefix;
+      this.os = os;
+      this.cpu = cpu;
+      this.prefix = new PlatformPrefix(libraryPrefix, os, cpu);
+    }
+
+    /**
+     * Identify a metadata file by its JAR entry name, i.e., {@code $prefix/$os/$arch/turnkey.xml}.
+     *
+     * @param entryName the entry name.
+     * @return the platform or {@code null} if the entry is not a metadata file for a known
+     *     platform.
+     */
+    static @Nullable PlatformInfo parse(final String entryName) {
+      final String[] components = entryName.split("/");
+      final int length = components.length;
+      if (length < 4 || !TURNKEY_FILE_NAME.equals(components[length - 1])) {
+        return null;
+      }
+      final OperatingSystem os = OperatingSystem.fromName(components[length - 3]);
+      final CPUArchitecture cpu = CPUArchitecture.fromName(components[length - 2]);
+      if (os == null || cpu == null) {
+        return null;
+      }
+      return new PlatformInfo(String.join("/", copyOf(components, length - 3)), os, cpu);
+    }
+  }
+}
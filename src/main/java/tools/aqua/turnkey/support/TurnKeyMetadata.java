@@ -18,14 +18,18 @@
 
 package tools.aqua.turnkey.support;
 
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Collections.unmodifiableSet;
 import static tools.aqua.turnkey.support.Utilities.*;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
@@ -44,6 +48,12 @@ public final class TurnKeyMetadata {
    */
   public final List<String> loadCommands;
 
+  /**
+   * The optional component groups by name, read-only. These are not handled by {@link
+   * TurnKey#load(String, java.util.function.Function)}, but only unpacked and loaded on request.
+   */
+  public final Map<String, OptionalGroup> optionalGroups;
+
   /**
    * Load a metadata bundle from a given stream source. This used a Java Properties XML-based
    * format.
@@ -60,11 +70,21 @@ public final class TurnKeyMetadata {
     final Set<String> systemLibraries = getSetProperty(properties, "system-libraries");
     final List<String> loadCommands = getListProperty(properties, "load-commands");
 
-    return new TurnKeyMetadata(bundledLibraries, systemLibraries, loadCommands);
+    final Map<String, OptionalGroup> optionalGroups = new LinkedHashMap<>();
+    for (final String group : getSetProperty(properties, "optional-groups")) {
+      final String groupKey = "optional-groups." + group;
+      optionalGroups.put(
+          group,
+          new OptionalGroup(
+              getSetProperty(properties, groupKey + ".bundled-libraries"),
+              getListProperty(properties, groupKey + ".load-commands")));
+    }
+
+    return new TurnKeyMetadata(bundledLibraries, systemLibraries, loadCommands, optionalGroups);
   }
 
   /**
-   * Create a new metadata bundle with the given contents.
+   * Create a new metadata bundle with the given contents and no optional groups.
    *
    * @param bundledLibraries the new {@link #bundledLibraries}, not copied.
    * @param systemLibraries the new {@link #systemLibraries}, not copied.
@@ -74,9 +94,26 @@ public final class TurnKeyMetadata {
       final Set<String> bundledLibraries,
       final Set<String> systemLibraries,
       final List<String> loadCommands) {
+    this(bundledLibraries, systemLibraries, loadCommands, emptyMap());
+  }
+
+  /**
+   * Create a new metadata bundle with the given contents.
+   *
+   * @param bundledLibraries the new {@link #bundledLibraries}, not copied.
+   * @param systemLibraries the new {@link #systemLibraries}, not copied.
+   * @param loadCommands the new {@link #loadCommands}, not copied.
+   * @param optionalGroups the new {@link #optionalGroups}, not copied.
+   */
+  public TurnKeyMetadata(
+      final Set<String> bundledLibraries,
+      final Set<String> systemLibraries,
+      final List<String> loadCommands,
+      final Map<String, OptionalGroup> optionalGroups) {
     this.bundledLibraries = unmodifiableSet(bundledLibraries);
     this.systemLibraries = unmodifiableSet(systemLibraries);
     this.loadCommands = unmodifiableList(loadCommands);
+    this.optionalGroups = unmodifiableMap(optionalGroups);
   }
 
   /**
@@ -92,6 +129,14 @@ public final class TurnKeyMetadata {
     setIterableProperty(properties, "system-libraries", systemLibraries);
     setIterableProperty(properties, "load-commands", loadCommands);
 
+    setIterableProperty(properties, "optional-groups", optionalGroups.keySet());
+    for (final Map.Entry<String, OptionalGroup> group : optionalGroups.entrySet()) {
+      final String groupKey = "optional-groups." + group.getKey();
+      setIterableProperty(
+          properties, groupKey + ".bundled-libraries", group.getValue().bundledLibraries);
+      setIterableProperty(properties, groupKey + ".load-commands", group.getValue().loadCommands);
+    }
+
     properties.storeToXML(outputStream, "TurnKey Metadata File");
   }
 
@@ -106,12 +151,13 @@ public final class TurnKeyMetadata {
     final TurnKeyMetadata that = (TurnKeyMetadata) obj;
     return Objects.equals(bundledLibraries, that.bundledLibraries)
         && Objects.equals(systemLibraries, that.systemLibraries)
-        && Objects.equals(loadCommands, that.loadCommands);
+        && Objects.equals(loadCommands, that.loadCommands)
+        && Objects.equals(optionalGroups, that.optionalGroups);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(bundledLibraries, systemLibraries, loadCommands);
+    return Objects.hash(bundledLibraries, systemLibraries, loadCommands, optionalGroups);
   }
 
   @Override
@@ -123,6 +169,63 @@ public final class TurnKeyMetadata {
         + systemLibraries
         + ", loadCommands="
         + loadCommands
+        + ", optionalGroups="
+        + optionalGroups
         + '}';
   }
+
+  /**
+   * An optional component group of a TurnKey distribution. Its files are unpacked to the same
+   * directory as the core libraries, but only when explicitly requested via {@link
+   * TurnKey#loadGroup(String, String, java.util.function.Function)}.
+   */
+  public static final class OptionalGroup {
+    /** The set of bundled library files belonging to this group, read-only. */
+    public final Set<String> bundledLibraries;
+
+    /**
+     * The platform-specific list of load commands to successfully load the group, in load order,
+     * read-only. The core libraries are always loaded beforehand.
+     */
+    public final List<String> loadCommands;
+
+    /**
+     * Create a new optional group with the given contents.
+     *
+     * @param bundledLibraries the new {@link #bundledLibraries}, not copied.
+     * @param loadCommands the new {@link #loadCommands}, not copied.
+     */
+    public OptionalGroup(final Set<String> bundledLibraries, final List<String> loadCommands) {
+      this.bundledLibraries = unmodifiableSet(bundledLibraries);
+      this.loadCommands = unmodifiableList(loadCommands);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof OptionalGroup)) {
+        return false;
+      }
+      final OptionalGroup that = (OptionalGroup) obj;
+      return Objects.equals(bundledLibraries, that.bundledLibraries)
+          && Objects.equals(loadCommands, that.loadCommands);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(bundledLibraries, loadCommands);
+    }
+
+    @Override
+    public String toString() {
+      return "OptionalGroup{"
+          + "bundledLibraries="
+          + bundledLibraries
+          + ", loadCommands="
+          + loadCommands
+          + '}';
+    }
+  }
 }
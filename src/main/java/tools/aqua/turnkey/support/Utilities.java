@@ -20,8 +20,14 @@ package tools.aqua.turnkey.support;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.stream.Stream;
 
 /** Utility method collection. */
 final class Utilities {
@@ -85,13 +91,74 @@ final class Utilities {
    *
    * @param in the input stream.
    * @param out the output stream.
+   * @throws InterruptedIOException if the thread is interrupted while copying.
    * @throws IOException if the read or write operation fails. The stream may be partially written.
    */
   static void copy(final InputStream in, final OutputStream out) throws IOException {
     final byte[] buffer = new byte[1 << 13];
     int read;
     while ((read = in.read(buffer, 0, buffer.length)) >= 0) {
+      checkInterrupted();
       out.write(buffer, 0, read);
     }
   }
+
+  /**
+   * Abort a long-running I/O operation if the current thread has been interrupted. Neither resource
+   * streams nor file streams reliably react to interrupts on their own.
+   *
+   * @throws InterruptedIOException if the current thread has been interrupted. The interrupt status
+   *     is kept.
+   */
+  // only reads the interrupt status of the current thread
+  @SuppressWarnings("PMD.DoNotUseThreads")
+  static void checkInterrupted() throws InterruptedIOException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new InterruptedIOException("Interrupted while copying");
+    }
+  }
+
+  /**
+   * Create a new SHA-256 message digest.
+   *
+   * @return the digest.
+   */
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is required to be supported", e);
+    }
+  }
+
+  /**
+   * Encode bytes as a lower-case hexadecimal string.
+   *
+   * @param bytes the bytes.
+   * @return the hexadecimal representation.
+   */
+  static String toHex(final byte[] bytes) {
+    final StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (final byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Delete a file or directory tree, if it exists.
+   *
+   * @param path the root of the tree.
+   * @throws IOException if deletion fails.
+   */
+  static void deleteRecursively(final Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(path)) {
+      for (final Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
 }
@@ -0,0 +1,61 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+@TestInstance(PER_CLASS)
+class DeadlineTest {
+
+  @Test
+  void testNoneNeverExpires() {
+    assertThat(Deadline.NONE.isBounded()).isFalse();
+    assertThat(Deadline.NONE.isExpired()).isFalse();
+    assertThat(Deadline.NONE.remainingNanos()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  void testZeroTimeoutIsExpired() {
+    final Deadline deadline = Deadline.after(0, MILLISECONDS);
+    assertThat(deadline.isBounded()).isTrue();
+    assertThat(deadline.isExpired()).isTrue();
+    assertThat(deadline.remainingNanos()).isNotPositive();
+  }
+
+  @Test
+  void testLongTimeoutIsPending() {
+    final Deadline deadline = Deadline.after(1, DAYS);
+    assertThat(deadline.isExpired()).isFalse();
+    assertThat(deadline.remainingNanos()).isPositive();
+    assertThat(deadline.describe()).startsWith("deadline of 86400000 ms");
+  }
+
+  @Test
+  void testNegativeTimeoutIsRejected() {
+    assertThatThrownBy(() -> Deadline.after(-1, MILLISECONDS))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
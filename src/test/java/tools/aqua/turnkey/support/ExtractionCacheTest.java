@@ -0,0 +1,177 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createFile;
+import static java.nio.file.Files.getFileStore;
+import static java.nio.file.Files.getPosixFilePermissions;
+import static java.nio.file.Files.newDirectoryStream;
+import static java.nio.file.Files.setPosixFilePermissions;
+import static java.nio.file.Files.write;
+import static java.nio.file.attribute.PosixFilePermission.GROUP_READ;
+import static java.nio.file.attribute.PosixFilePermission.OTHERS_READ;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_READ;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static tools.aqua.turnkey.support.Utilities.deleteRecursively;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+@TestInstance(PER_CLASS)
+class ExtractionCacheTest {
+
+  private static final String SOURCE_A = "/com/acme/linux/amd64/liba.so";
+  private static final String SOURCE_B = "/com/acme/linux/amd64/libb.so";
+  private static final String SOURCE_C = "/com/acme/linux/amd64/libc.so";
+  private static final String SHARED_CONTENT = "shared";
+  private static final String OTHER_CONTENT = "other";
+
+  private static Function<String, @Nullable InputStream> resources() {
+    final Map<String, String> contents = new HashMap<>();
+    contents.put(SOURCE_A, SHARED_CONTENT);
+    contents.put(SOURCE_B, SHARED_CONTENT);
+    contents.put(SOURCE_C, OTHER_CONTENT);
+    return name -> {
+      final String content = contents.get(name);
+      return content == null ? null : new ByteArrayInputStream(content.getBytes(UTF_8));
+    };
+  }
+
+  @Test
+  void testIdenticalFilesShareOneBlob(final @TempDir Path root) throws IOException {
+    final ExtractionCache cache = new ExtractionCache(root);
+    final Path directory = cache.createLoadDirectory();
+
+    cache.unpack(SOURCE_A, directory.resolve("liba.so"), resources());
+    cache.unpack(SOURCE_B, directory.resolve("libb.so"), resources());
+    cache.unpack(SOURCE_C, directory.resolve("libc.so"), resources());
+
+    assertThat(directory.resolve("liba.so")).hasContent(SHARED_CONTENT);
+    assertThat(directory.resolve("libb.so")).hasContent(SHARED_CONTENT);
+    assertThat(directory.resolve("libc.so")).hasContent(OTHER_CONTENT);
+    assertThat(root.resolve("blobs").toFile().list()).hasSize(2);
+  }
+
+  @Test
+  void testLiveBlobsSurviveCollection(final @TempDir Path root) throws IOException {
+    final ExtractionCache cache = new ExtractionCache(root);
+    final Path directory = cache.createLoadDirectory();
+    cache.unpack(SOURCE_A, directory.resolve("liba.so"), resources());
+
+    cache.collectGarbage();
+
+    assertThat(root.resolve("blobs").toFile().list()).hasSize(1);
+    assertThat(directory.resolve("liba.so")).hasContent(SHARED_CONTENT);
+  }
+
+  @Test
+  void testDeadLoadDirectoriesAndTheirBlobsAreCollected(final @TempDir Path root)
+      throws IOException {
+    final ExtractionCache cache = new ExtractionCache(root);
+    final Path deadDirectory = createDirectories(root.resolve("loads").resolve("turnkeydead"));
+    createFile(root.resolve("loads").resolve("turnkeydead.lock"));
+    write(root.resolve("blobs").resolve("0123"), OTHER_CONTENT.getBytes(UTF_8));
+    createFile(createDirectories(root.resolve("refs").resolve("0123")).resolve("turnkeydead"));
+
+    cache.collectGarbage();
+
+    assertThat(deadDirectory).doesNotExist();
+    assertThat(root.resolve("refs").resolve("0123")).doesNotExist();
+    assertThat(root.resolve("blobs").resolve("0123")).doesNotExist();
+  }
+
+  @Test
+  void testBlobsAreReadableByEveryone(final @TempDir Path root) throws IOException {
+    assumeTrue(getFileStore(root).supportsFileAttributeView("posix"));
+    final ExtractionCache cache = new ExtractionCache(root);
+    final Path directory = cache.createLoadDirectory();
+
+    cache.unpack(SOURCE_A, directory.resolve("liba.so"), resources());
+
+    try (DirectoryStream<Path> blobs = newDirectoryStream(root.resolve("blobs"))) {
+      for (final Path blob : blobs) {
+        assertThat(getPosixFilePermissions(blob))
+            .containsExactlyInAnyOrder(OWNER_READ, GROUP_READ, OTHERS_READ);
+      }
+    }
+  }
+
+  @Test
+  void testMissingResourceIsReported(final @TempDir Path root) throws IOException {
+    final ExtractionCache cache = new ExtractionCache(root);
+    final Path directory = cache.createLoadDirectory();
+
+    assertThatThrownBy(() -> cache.unpack("/missing.so", directory.resolve("x.so"), resources()))
+        .isInstanceOf(TurnkeyException.class)
+        .hasMessageContaining("packaging error");
+  }
+
+  @Test
+  void testCacheStructureSharesTheRootPermissions(final @TempDir Path root) throws IOException {
+    assumeTrue(getFileStore(root).supportsFileAttributeView("posix"));
+    setPosixFilePermissions(root, PosixFilePermissions.fromString("rwxrwx---"));
+    final ExtractionCache cache = new ExtractionCache(root);
+    final Path directory = cache.createLoadDirectory();
+
+    cache.unpack(SOURCE_A, directory.resolve("liba.so"), resources());
+
+    for (final String shared : new String[] {"blobs", "refs", "loads"}) {
+      assertThat(PosixFilePermissions.toString(getPosixFilePermissions(root.resolve(shared))))
+          .isEqualTo("rwxrwx---");
+    }
+    assertThat(PosixFilePermissions.toString(getPosixFilePermissions(directory)))
+        .isEqualTo("rwxrwx---");
+    assertThat(PosixFilePermissions.toString(getPosixFilePermissions(root.resolve("cache.lock"))))
+        .isEqualTo("rw-rw----");
+    assertThat(
+            PosixFilePermissions.toString(
+                getPosixFilePermissions(
+                    root.resolve("loads").resolve(directory.getFileName() + ".lock"))))
+        .isEqualTo("rw-rw----");
+  }
+
+  @Test
+  void testUnusableCacheFallsBackToTheResource(final @TempDir Path root) throws IOException {
+    final ExtractionCache cache = new ExtractionCache(root);
+    final Path directory = cache.createLoadDirectory();
+    // blobs can no longer be written, e.g., since another user owns the directory
+    deleteRecursively(root.resolve("blobs"));
+    write(root.resolve("blobs"), OTHER_CONTENT.getBytes(UTF_8));
+
+    cache.unpack(SOURCE_A, directory.resolve("liba.so"), resources());
+
+    assertThat(directory.resolve("liba.so")).hasContent(SHARED_CONTENT);
+  }
+}
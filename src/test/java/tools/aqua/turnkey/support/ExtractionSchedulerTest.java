@@ -0,0 +1,176 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.file.Files.getPosixFilePermissions;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static tools.aqua.turnkey.support.ExtractionScheduler.UNLIMITED;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+@TestInstance(PER_CLASS)
+class ExtractionSchedulerTest {
+
+  private static final int DATA_SIZE = 3 * ExtractionScheduler.MAX_CHUNK_SIZE + 17;
+
+  private static byte[] randomData() {
+    final byte[] data = new byte[DATA_SIZE];
+    new Random(42).nextBytes(data);
+    return data;
+  }
+
+  @Test
+  void testUnlimitedSchedulerDoesNotThrottle() throws IOException {
+    final ExtractionScheduler scheduler = new ExtractionScheduler(null, UNLIMITED, UNLIMITED);
+    final byte[] data = randomData();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    scheduler.copy(new ByteArrayInputStream(data), out);
+
+    assertThat(scheduler.isThrottling()).isFalse();
+    assertThat(out.toByteArray()).isEqualTo(data);
+  }
+
+  @Test
+  void testLocalSchedulerCopiesCompletely() throws IOException {
+    final ExtractionScheduler scheduler = new ExtractionScheduler(null, 1 << 16, UNLIMITED);
+    final byte[] data = randomData();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    scheduler.copy(new ByteArrayInputStream(data), out);
+
+    assertThat(scheduler.isThrottling()).isTrue();
+    assertThat(out.toByteArray()).isEqualTo(data);
+    assertThat(scheduler.getBytesWritten()).isEqualTo(DATA_SIZE);
+  }
+
+  @Test
+  void testSharedSchedulerCopiesCompletely(final @TempDir Path sharedDirectory)
+      throws IOException {
+    final ExtractionScheduler scheduler =
+        new ExtractionScheduler(sharedDirectory, ExtractionScheduler.MAX_CHUNK_SIZE, UNLIMITED);
+    final byte[] data = randomData();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    scheduler.copy(new ByteArrayInputStream(data), out);
+
+    assertThat(out.toByteArray()).isEqualTo(data);
+    assertThat(sharedDirectory.resolve("turnkey-slot-0.lock")).exists();
+  }
+
+  @Test
+  void testMissingSharedDirectoryIsCreated(final @TempDir Path directory) throws IOException {
+    final Path sharedDirectory = directory.resolve("missing/shared");
+    final ExtractionScheduler scheduler =
+        new ExtractionScheduler(sharedDirectory, ExtractionScheduler.MAX_CHUNK_SIZE, UNLIMITED);
+    final byte[] data = randomData();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    scheduler.copy(new ByteArrayInputStream(data), out);
+
+    assertThat(out.toByteArray()).isEqualTo(data);
+    assertThat(scheduler.getSharedDirectoryFailure()).isNull();
+    assertThat(PosixFilePermissions.toString(getPosixFilePermissions(sharedDirectory)))
+        .isEqualTo("rwxrwxrwx");
+    assertThat(
+            PosixFilePermissions.toString(
+                getPosixFilePermissions(sharedDirectory.resolve("turnkey-slot-0.lock"))))
+        .isEqualTo("rw-rw-rw-");
+  }
+
+  @Test
+  void testUnusableSharedDirectoryFallsBackToLocalLimits(final @TempDir Path directory)
+      throws IOException {
+    final Path sharedDirectory = write(directory.resolve("file"), new byte[0]);
+    final ExtractionScheduler scheduler =
+        new ExtractionScheduler(
+            sharedDirectory, ExtractionScheduler.MAX_CHUNK_SIZE, 8L * DATA_SIZE);
+    final byte[] data = randomData();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    scheduler.copy(new ByteArrayInputStream(data), out);
+    scheduler.copy(new ByteArrayInputStream(data), new ByteArrayOutputStream());
+
+    assertThat(out.toByteArray()).isEqualTo(data);
+    assertThat(scheduler.getSharedDirectoryFailure()).isInstanceOf(IOException.class);
+    assertThat(scheduler.getBytesWritten()).isEqualTo(2L * DATA_SIZE);
+  }
+
+  @Test
+  void testBandwidthLimitIsEnforced() throws IOException {
+    final ExtractionScheduler scheduler = new ExtractionScheduler(null, UNLIMITED, DATA_SIZE);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    final long start = System.nanoTime();
+    scheduler.copy(new ByteArrayInputStream(randomData()), out);
+    final long elapsed = System.nanoTime() - start;
+
+    // a single writer gets the whole bandwidth, i.e., the last chunk starts after about a second
+    assertThat(elapsed).isGreaterThan(750_000_000L).isLessThan(2_000_000_000L);
+    assertThat(scheduler.getThrottleNanos()).isPositive();
+  }
+
+  @Test
+  @SuppressWarnings("PMD.DoNotUseThreads") // both schedulers must copy at the same time
+  void testSharedBandwidthLimitCoversAllSchedulers(final @TempDir Path sharedDirectory)
+      throws ExecutionException, InterruptedException, IOException {
+    final ExtractionScheduler first =
+        new ExtractionScheduler(sharedDirectory, UNLIMITED, DATA_SIZE * 2L);
+    final ExtractionScheduler second =
+        new ExtractionScheduler(sharedDirectory, UNLIMITED, DATA_SIZE * 2L);
+    final ByteArrayOutputStream firstOut = new ByteArrayOutputStream();
+    final ByteArrayOutputStream secondOut = new ByteArrayOutputStream();
+
+    final long start = System.nanoTime();
+    final FutureTask<Void> task =
+        new FutureTask<>(
+            () -> {
+              second.copy(new ByteArrayInputStream(randomData()), secondOut);
+              return null;
+            });
+    new Thread(task).start();
+    first.copy(new ByteArrayInputStream(randomData()), firstOut);
+    task.get();
+    final long elapsed = System.nanoTime() - start;
+
+    // both schedulers together write twice the data per second, i.e., about one second
+    assertThat(elapsed).isGreaterThan(750_000_000L);
+    assertThat(firstOut.toByteArray()).isEqualTo(randomData());
+    assertThat(secondOut.toByteArray()).isEqualTo(randomData());
+  }
+
+  @Test
+  void testInvalidLimitsAreRejected() {
+    assertThatIllegalArgumentException().isThrownBy(() -> new ExtractionScheduler(null, 0, 1));
+    assertThatIllegalArgumentException().isThrownBy(() -> new ExtractionScheduler(null, 1, -1));
+  }
+}
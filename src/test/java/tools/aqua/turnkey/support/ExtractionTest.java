@@ -0,0 +1,169 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.util.Lists.list;
+import static org.assertj.core.util.Sets.set;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static tools.aqua.turnkey.support.Extraction.extractionOrder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+@TestInstance(PER_CLASS)
+class ExtractionTest {
+
+  private static final String LIBRARY_A = "liba.so";
+  private static final String LIBRARY_B = "libb.so";
+  private static final String LIBRARY_C = "libc.so";
+  private static final String SYSTEM_LIBRARY = "libsys.so";
+  private static final PlatformPrefix PLATFORM_PREFIX =
+      new PlatformPrefix("com/acme", OperatingSystem.LINUX, CPUArchitecture.AMD64);
+
+  private static InputStream content(final String file) {
+    return new ByteArrayInputStream(file.getBytes(UTF_8));
+  }
+
+  private static Extraction extraction(
+      final Path directory, final Function<String, @Nullable InputStream> getResourceAsStream) {
+    return new Extraction(
+        PLATFORM_PREFIX,
+        directory,
+        set(LIBRARY_A, LIBRARY_B),
+        list(LIBRARY_A, LIBRARY_B),
+        getResourceAsStream,
+        null);
+  }
+
+  @Test
+  void testExtractionOrderFollowsLoadCommands() {
+    assertThat(extractionOrder(set(LIBRARY_A, LIBRARY_B), list(LIBRARY_B, LIBRARY_A)))
+        .containsExactly(LIBRARY_B, LIBRARY_A);
+  }
+
+  @Test
+  void testExtractionOrderPutsUnreferencedFilesFirst() {
+    assertThat(extractionOrder(set(LIBRARY_A, LIBRARY_B, LIBRARY_C), list(LIBRARY_C)))
+        .containsExactly(LIBRARY_A, LIBRARY_B, LIBRARY_C);
+  }
+
+  @Test
+  void testExtractionOrderIgnoresNonBundledLoadCommands() {
+    assertThat(extractionOrder(set(LIBRARY_A), list(SYSTEM_LIBRARY, LIBRARY_A, LIBRARY_A)))
+        .containsExactly(LIBRARY_A);
+  }
+
+  @Test
+  void testExtractionOrderWithoutLoadCommands() {
+    assertThat(extractionOrder(set(LIBRARY_B, LIBRARY_A), emptyList()))
+        .containsExactly(LIBRARY_B, LIBRARY_A);
+  }
+
+  @Test
+  @SuppressWarnings("PMD.DoNotUseThreads") // the blocked resource keeps the worker's interrupt
+  void testAwaitReturnsBeforeLaterFilesAreUnpacked(final @TempDir Path directory)
+      throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    final Extraction extraction =
+        extraction(
+            directory,
+            name -> {
+              if (name.equals(PLATFORM_PREFIX.resolve(LIBRARY_B))) {
+                try {
+                  release.await();
+                } catch (final InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+              return content(name);
+            });
+    extraction.start("test");
+
+    extraction.await(LIBRARY_A);
+    assertThat(directory.resolve(LIBRARY_A)).hasContent(PLATFORM_PREFIX.resolve(LIBRARY_A));
+    assertThat(directory.resolve(LIBRARY_B)).doesNotExist();
+    assertThat(extraction.getExtractedCount()).isEqualTo(1);
+
+    release.countDown();
+    extraction.awaitAll();
+    assertThat(directory.resolve(LIBRARY_B)).hasContent(PLATFORM_PREFIX.resolve(LIBRARY_B));
+    assertThat(extraction.getExtractedCount()).isEqualTo(2);
+  }
+
+  @Test
+  void testMissingFileIsReportedByAwait(final @TempDir Path directory) {
+    final Extraction extraction =
+        extraction(
+            directory,
+            name -> name.equals(PLATFORM_PREFIX.resolve(LIBRARY_A)) ? content(name) : null);
+    extraction.start("test");
+
+    extraction.await(LIBRARY_A);
+    assertThatThrownBy(() -> extraction.await(LIBRARY_B))
+        .isInstanceOf(TurnkeyException.class)
+        .hasCauseInstanceOf(TurnkeyException.class);
+    assertThatThrownBy(extraction::awaitAll)
+        .isInstanceOf(TurnkeyException.class)
+        .hasMessageContaining(PLATFORM_PREFIX.toString());
+  }
+
+  @Test
+  void testResourceFunctionFailureIsReportedByAwait(final @TempDir Path directory) {
+    final Extraction extraction =
+        extraction(
+            directory,
+            name -> {
+              throw new IllegalStateException(name);
+            });
+    extraction.start("test");
+
+    assertThatThrownBy(() -> extraction.await(LIBRARY_A))
+        .isInstanceOf(TurnkeyException.class)
+        .hasRootCauseInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(extraction::awaitAll).isInstanceOf(TurnkeyException.class);
+  }
+
+  @Test
+  void testAwaitWaitsForUnreferencedFiles(final @TempDir Path directory) {
+    final Extraction extraction =
+        new Extraction(
+            PLATFORM_PREFIX,
+            directory,
+            set(LIBRARY_A, LIBRARY_B),
+            list(LIBRARY_A),
+            ExtractionTest::content,
+            null);
+    extraction.start("test");
+
+    extraction.await(LIBRARY_A);
+    assertThat(directory.resolve(LIBRARY_A)).exists();
+    assertThat(directory.resolve(LIBRARY_B)).hasContent(PLATFORM_PREFIX.resolve(LIBRARY_B));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.write;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static tools.aqua.turnkey.support.TurnKeyAgent.discover;
+import static tools.aqua.turnkey.support.TurnKeyAgent.parsePrefixes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+@TestInstance(PER_CLASS)
+class TurnKeyAgentTest {
+
+  private static final String PLATFORM = "/linux/amd64/" + TurnKey.TURNKEY_FILE_NAME;
+  private static final String OTHER_PLATFORM = "/windows/amd64/" + TurnKey.TURNKEY_FILE_NAME;
+  private static final byte[] CONTENT = "<properties/>".getBytes(UTF_8);
+
+  private static Map<String, Path> discoverLinux(
+      final List<Path> classPath, final List<Path> modulePath) {
+    return discover(OperatingSystem.LINUX, CPUArchitecture.AMD64, classPath, modulePath);
+  }
+
+  private static Path writeJar(final Path file, final String... entries) throws IOException {
+    try (JarOutputStream jar = new JarOutputStream(newOutputStream(file))) {
+      for (final String entry : entries) {
+        jar.putNextEntry(new ZipEntry(entry));
+        jar.write(CONTENT);
+        jar.closeEntry();
+      }
+    }
+    return file;
+  }
+
+  private static Path writeDirectory(final Path directory, final String... entries)
+      throws IOException {
+    for (final String entry : entries) {
+      final Path file = directory.resolve(entry);
+      createDirectories(file.getParent());
+      write(file, CONTENT);
+    }
+    return directory;
+  }
+
+  @Test
+  void testNoArgumentsYieldNoPrefixes() {
+    assertThat(parsePrefixes(null)).isEmpty();
+    assertThat(parsePrefixes("")).isEmpty();
+  }
+
+  @Test
+  void testPrefixesAreTrimmedAndBlanksSkipped() {
+    assertThat(parsePrefixes(" com/acme/a ,, com/acme/b,  ,"))
+        .containsExactly("com/acme/a", "com/acme/b");
+  }
+
+  @Test
+  void testClassPathJarIsScanned(final @TempDir Path directory) throws IOException {
+    final Path jar =
+        writeJar(
+            directory.resolve("bundle.jar"),
+            "com/acme/a" + PLATFORM,
+            "com/acme/b" + OTHER_PLATFORM,
+            "com/acme/a/linux/amd64/liba.so");
+
+    assertThat(discoverLinux(list(jar), emptyList())).containsOnlyKeys("com/acme/a");
+    assertThat(discoverLinux(list(jar), emptyList()).get("com/acme/a")).isEqualTo(jar);
+  }
+
+  @Test
+  void testClassPathDirectoryIsScanned(final @TempDir Path directory) throws IOException {
+    final Path classes = writeDirectory(directory.resolve("classes"), "com/acme/a" + PLATFORM);
+
+    assertThat(discoverLinux(list(classes), emptyList()).get("com/acme/a")).isEqualTo(classes);
+  }
+
+  @Test
+  void testExplodedModuleIsScanned(final @TempDir Path directory) throws IOException {
+    final Path module =
+        writeDirectory(directory.resolve("module"), "module-info.class", "com/acme/a" + PLATFORM);
+
+    assertThat(discoverLinux(emptyList(), list(module)).get("com/acme/a")).isEqualTo(module);
+  }
+
+  @Test
+  void testModuleDirectoryIsScanned(final @TempDir Path directory) throws IOException {
+    final Path modules = createDirectories(directory.resolve("modules"));
+    final Path jar = writeJar(modules.resolve("a.jar"), "com/acme/a" + PLATFORM);
+    final Path exploded = writeDirectory(modules.resolve("b"), "com/acme/b" + PLATFORM);
+
+    final Map<String, Path> bundles = discoverLinux(emptyList(), list(modules));
+
+    assertThat(bundles).containsOnlyKeys("com/acme/a", "com/acme/b");
+    assertThat(bundles.get("com/acme/a")).isEqualTo(jar);
+    assertThat(bundles.get("com/acme/b")).isEqualTo(exploded);
+  }
+
+  @Test
+  void testClassPathPrecedesModulePath(final @TempDir Path directory) throws IOException {
+    final Path jar = writeJar(directory.resolve("a.jar"), "com/acme/a" + PLATFORM);
+    final Path module =
+        writeDirectory(directory.resolve("module"), "module-info.class", "com/acme/a" + PLATFORM);
+
+    assertThat(discoverLinux(list(jar), list(module)).get("com/acme/a")).isEqualTo(jar);
+  }
+
+  @Test
+  void testMissingEntriesAreIgnored(final @TempDir Path directory) {
+    assertThat(discoverLinux(list(directory.resolve("missing.jar")), emptyList())).isEmpty();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.util.Lists.list;
+import static org.assertj.core.util.Sets.set;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+@TestInstance(PER_CLASS)
+class TurnKeyBundleWriterTest {
+
+  private static final String PREFIX = "com/acme/example";
+  private static final String LIBRARY_A = "liba.so";
+  private static final String LIBRARY_B = "libb.so";
+  private static final String LIBRARY_C = "libc.so";
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int DATA_DESCRIPTOR_FLAG = 8;
+  private static final int DATA_DESCRIPTOR_SIZE = 16;
+
+  private static final TurnKeyMetadata METADATA =
+      new TurnKeyMetadata(
+          set(LIBRARY_A, LIBRARY_B),
+          set(),
+          list(LIBRARY_B, LIBRARY_A),
+          Collections.singletonMap(
+              "plugin", new TurnKeyMetadata.OptionalGroup(set(LIBRARY_C), list(LIBRARY_C))));
+
+  private static Path createLibraries(final Path directory) throws IOException {
+    write(directory.resolve(LIBRARY_A), new byte[] {1, 2, 3});
+    write(directory.resolve(LIBRARY_B), new byte[5000]);
+    write(directory.resolve(LIBRARY_C), "c".getBytes(UTF_8));
+    return directory;
+  }
+
+  /** Walk the local file headers and collect the data offset of each entry. */
+  private static Map<String, Long> dataOffsets(final Path jar) throws IOException {
+    final Map<String, Long> offsets = new LinkedHashMap<>();
+    final byte[] bytes = readAllBytes(jar);
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    try (ZipFile zip = new ZipFile(jar.toFile())) {
+      int position = 0;
+      while (buffer.getInt(position) == LOCAL_HEADER_SIGNATURE) {
+        final int flags = buffer.getShort(position + 6) & 0xFFFF;
+        final int nameLength = buffer.getShort(position + 26) & 0xFFFF;
+        final int extraLength = buffer.getShort(position + 28) & 0xFFFF;
+        final String name = new String(bytes, position + 30, nameLength, UTF_8);
+        final int data = position + 30 + nameLength + extraLength;
+        offsets.put(name, (long) data);
+        position = data + (int) zip.getEntry(name).getCompressedSize();
+        if ((flags & DATA_DESCRIPTOR_FLAG) != 0) {
+          position += DATA_DESCRIPTOR_SIZE;
+        }
+      }
+    }
+    return offsets;
+  }
+
+  @Test
+  void testLibrariesAreStoredAndAligned(final @TempDir Path directory) throws IOException {
+    final Path libraries = createLibraries(directory);
+    final Path jar = directory.resolve("bundle.jar");
+
+    new TurnKeyBundleWriter(PREFIX)
+        .addPlatform("linux", "amd64", METADATA, libraries)
+        .addPlatform("windows", "x86", METADATA, libraries)
+        .writeTo(jar);
+
+    final Map<String, Long> offsets = dataOffsets(jar);
+    try (ZipFile zip = new ZipFile(jar.toFile())) {
+      for (final String platform : list("linux/amd64/", "windows/x86/")) {
+        for (final String library : list(LIBRARY_A, LIBRARY_B, LIBRARY_C)) {
+          final String name = PREFIX + "/" + platform + library;
+          assertThat(zip.getEntry(name).getMethod()).isEqualTo(ZipEntry.STORED);
+          assertThat(offsets.get(name) % TurnKeyBundleWriter.DEFAULT_ALIGNMENT).isZero();
+        }
+      }
+    }
+  }
+
+  @Test
+  void testBundleContentRoundTrips(final @TempDir Path directory) throws IOException {
+    final Path libraries = createLibraries(directory);
+    final Path jar = directory.resolve("bundle.jar");
+
+    new TurnKeyBundleWriter(PREFIX, 64)
+        .addPlatform("osx", "aarch64", METADATA, libraries)
+        .writeTo(jar);
+
+    try (ZipFile zip = new ZipFile(jar.toFile())) {
+      final String platform = PREFIX + "/osx/aarch64/";
+      try (InputStream in =
+          zip.getInputStream(zip.getEntry(platform + TurnKey.TURNKEY_FILE_NAME))) {
+        assertThat(TurnKeyMetadata.loadFrom(in)).isEqualTo(METADATA);
+      }
+      try (InputStream in = zip.getInputStream(zip.getEntry(platform + LIBRARY_A))) {
+        assertThat(in).hasBinaryContent(new byte[] {1, 2, 3});
+      }
+    }
+    assertThat(dataOffsets(jar).get(PREFIX + "/osx/aarch64/" + LIBRARY_B) % 64).isZero();
+  }
+
+  @Test
+  void testMaximumAlignmentIsSupported(final @TempDir Path directory) throws IOException {
+    final Path libraries = createLibraries(directory);
+    final Path jar = directory.resolve("bundle.jar");
+
+    new TurnKeyBundleWriter(PREFIX, TurnKeyBundleWriter.MAX_ALIGNMENT)
+        .addPlatform("linux", "amd64", METADATA, libraries)
+        .writeTo(jar);
+
+    for (final String library : list(LIBRARY_A, LIBRARY_B, LIBRARY_C)) {
+      assertThat(
+              dataOffsets(jar).get(PREFIX + "/linux/amd64/" + library)
+                  % TurnKeyBundleWriter.MAX_ALIGNMENT)
+          .isZero();
+    }
+  }
+
+  @Test
+  void testInvalidAlignmentsAreRejected() {
+    assertThatIllegalArgumentException().isThrownBy(() -> new TurnKeyBundleWriter(PREFIX, 0));
+    assertThatIllegalArgumentException().isThrownBy(() -> new TurnKeyBundleWriter(PREFIX, 3000));
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> new TurnKeyBundleWriter(PREFIX, 2 * TurnKeyBundleWriter.MAX_ALIGNMENT));
+    assertThatIllegalArgumentException().isThrownBy(() -> new TurnKeyBundleWriter(PREFIX, 0xFFFF));
+  }
+
+  @Test
+  void testInvalidPlatformsAreRejected(final @TempDir Path directory) {
+    final TurnKeyBundleWriter writer =
+        new TurnKeyBundleWriter(PREFIX).addPlatform("linux", "amd64", METADATA, directory);
+
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> writer.addPlatform("beos", "amd64", METADATA, directory));
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> writer.addPlatform("linux", "sparc", METADATA, directory));
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> writer.addPlatform("linux", "amd64", METADATA, directory));
+  }
+}
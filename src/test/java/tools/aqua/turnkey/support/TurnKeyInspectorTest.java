@@ -0,0 +1,195 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newOutputStream;
+import static java.util.Collections.emptySet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static org.assertj.core.util.Sets.set;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static tools.aqua.turnkey.support.TurnKeyInspector.inspect;
+import static tools.aqua.turnkey.support.TurnKeyInspector.toJson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+@TestInstance(PER_CLASS)
+class TurnKeyInspectorTest {
+
+  private static final byte[] LIBRARY_A = new byte[4096];
+  private static final byte[] SHARED_LIBRARY = "shared".getBytes(UTF_8);
+
+  private static void addEntry(
+      final JarOutputStream jar, final String name, final byte[] content, final boolean stored)
+      throws IOException {
+    final ZipEntry entry = new ZipEntry(name);
+    if (stored) {
+      final CRC32 crc = new CRC32();
+      crc.update(content);
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(content.length);
+      entry.setCompressedSize(content.length);
+      entry.setCrc(crc.getValue());
+    }
+    jar.putNextEntry(entry);
+    jar.write(content);
+    jar.closeEntry();
+  }
+
+  private static byte[] metadata(final String... bundledLibraries) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TurnKeyMetadata(set(bundledLibraries), emptySet(), Arrays.asList(bundledLibraries))
+        .writeTo(out);
+    return out.toByteArray();
+  }
+
+  private static Path writeJar(final Path directory) throws IOException {
+    final Path file = directory.resolve("bundle.jar");
+    try (JarOutputStream jar = new JarOutputStream(newOutputStream(file))) {
+      addEntry(jar, "com/acme/README.txt", SHARED_LIBRARY, false);
+      addEntry(jar, "com/acme/beos/amd64/turnkey.xml", metadata(), false);
+      addEntry(jar, "com/acme/linux/amd64/turnkey.xml", metadata("liba.so", "libs.so"), false);
+      addEntry(jar, "com/acme/linux/amd64/liba.so", LIBRARY_A, false);
+      addEntry(jar, "com/acme/linux/amd64/libs.so", SHARED_LIBRARY, true);
+      addEntry(jar, "com/acme/osx/aarch64/turnkey.xml", metadata("libs.so"), false);
+      addEntry(jar, "com/acme/osx/aarch64/libs.so", SHARED_LIBRARY, true);
+    }
+    return file;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> onlyBundle(final Map<String, Object> report) {
+    final List<Object> bundles = (List<Object>) report.get("bundles");
+    assertThat(bundles).hasSize(1);
+    return (Map<String, Object>) bundles.get(0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> file(
+      final Map<String, Object> bundle, final int platform, final int file) {
+    final List<Object> platforms = (List<Object>) bundle.get("platforms");
+    final Map<String, Object> platformReport = (Map<String, Object>) platforms.get(platform);
+    return (Map<String, Object>) ((List<Object>) platformReport.get("files")).get(file);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testPlatformsAreDiscovered(final @TempDir Path directory) throws IOException {
+    try (ZipFile jar = new ZipFile(writeJar(directory).toFile())) {
+      final Map<String, Object> bundle = onlyBundle(inspect(jar, false));
+
+      assertThat(bundle.get("prefix")).isEqualTo("com/acme");
+      final List<Object> platforms = (List<Object>) bundle.get("platforms");
+      assertThat(platforms).hasSize(2);
+      assertThat(((Map<String, Object>) platforms.get(0)).get("os")).isEqualTo("linux");
+      assertThat(((Map<String, Object>) platforms.get(0)).get("arch")).isEqualTo("amd64");
+      assertThat(((Map<String, Object>) platforms.get(1)).get("os")).isEqualTo("osx");
+      assertThat(((Map<String, Object>) platforms.get(1)).get("arch")).isEqualTo("aarch64");
+    }
+  }
+
+  @Test
+  void testSizesAndMethodsAreReported(final @TempDir Path directory) throws IOException {
+    try (ZipFile jar = new ZipFile(writeJar(directory).toFile())) {
+      final Map<String, Object> bundle = onlyBundle(inspect(jar, false));
+
+      final Map<String, Object> deflated = file(bundle, 0, 0);
+      assertThat(deflated.get("name")).isEqualTo("liba.so");
+      assertThat(deflated.get("method")).isEqualTo("deflated");
+      assertThat(deflated.get("uncompressedSize")).isEqualTo((long) LIBRARY_A.length);
+      assertThat((Long) deflated.get("compressedSize")).isLessThan(LIBRARY_A.length);
+
+      final Map<String, Object> stored = file(bundle, 0, 1);
+      assertThat(stored.get("name")).isEqualTo("libs.so");
+      assertThat(stored.get("method")).isEqualTo("stored");
+      assertThat(stored.get("compressedSize")).isEqualTo((long) SHARED_LIBRARY.length);
+
+      assertThat(bundle.get("uncompressedSize"))
+          .isEqualTo((long) LIBRARY_A.length + 2L * SHARED_LIBRARY.length);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testDuplicatesAreDetected(final @TempDir Path directory) throws IOException {
+    try (ZipFile jar = new ZipFile(writeJar(directory).toFile())) {
+      final Map<String, Object> bundle = onlyBundle(inspect(jar, false));
+
+      final List<Object> duplicates = (List<Object>) bundle.get("duplicates");
+      assertThat(duplicates).hasSize(1);
+      final Map<String, Object> duplicate = (Map<String, Object>) duplicates.get(0);
+      assertThat(duplicate.get("sha256")).isEqualTo(file(bundle, 0, 1).get("sha256"));
+      assertThat(duplicate.get("size")).isEqualTo((long) SHARED_LIBRARY.length);
+      assertThat((Iterable<Object>) duplicate.get("files"))
+          .containsExactly("linux/amd64/libs.so", "osx/aarch64/libs.so");
+      assertThat(bundle.get("duplicatedBytes")).isEqualTo((long) SHARED_LIBRARY.length);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testExtractionIsTimedOnRequest(final @TempDir Path directory) throws IOException {
+    try (ZipFile jar = new ZipFile(writeJar(directory).toFile())) {
+      final List<Object> timed = (List<Object>) onlyBundle(inspect(jar, true)).get("platforms");
+      final List<Object> untimed = (List<Object>) onlyBundle(inspect(jar, false)).get("platforms");
+
+      assertThat((Long) ((Map<String, Object>) timed.get(0)).get("extractionNanos")).isPositive();
+      assertThat((Map<String, Object>) untimed.get(0)).doesNotContainKey("extractionNanos");
+    }
+  }
+
+  @Test
+  void testJsonScalars() {
+    assertThat(toJson(42L, "")).isEqualTo("42");
+    assertThat(toJson(true, "")).isEqualTo("true");
+    assertThat(toJson(null, "")).isEqualTo("null");
+    assertThat(toJson("a\"b\\c\n", "")).isEqualTo("\"a\\\"b\\\\c\\u000a\"");
+  }
+
+  @Test
+  void testJsonEmptyContainers() {
+    assertThat(toJson(Collections.emptyMap(), "")).isEqualTo("{}");
+    assertThat(toJson(Collections.emptyList(), "")).isEqualTo("[]");
+  }
+
+  @Test
+  void testJsonNestedContainers() {
+    final Map<String, Object> map = new LinkedHashMap<>();
+    map.put("name", "liba.so");
+    map.put("sizes", list(1, 2));
+
+    assertThat(toJson(map, ""))
+        .isEqualTo("{\n  \"name\": \"liba.so\",\n  \"sizes\": [\n    1,\n    2\n  ]\n}");
+  }
+}
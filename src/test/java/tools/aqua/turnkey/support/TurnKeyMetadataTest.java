@@ -21,6 +21,7 @@ package tools.aqua.turnkey.support;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.InstanceOfAssertFactories.COLLECTION;
 import static org.assertj.core.api.InstanceOfAssertFactories.LIST;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
 import static org.assertj.core.util.Lists.list;
 import static org.assertj.core.util.Sets.set;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
@@ -29,6 +30,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Properties;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -41,6 +43,7 @@ class TurnKeyMetadataTest {
   private static final String LIBRARY_C = "libc.so";
   private static final String SYSTEM_LIBRARY_1 = "libsys.so";
   private static final String SYSTEM_LIBRARY_2 = "libsyx.so";
+  private static final String GROUP = "plugin";
 
   @Test
   void testLoadingMetadataWorks() throws IOException {
@@ -68,6 +71,44 @@ class TurnKeyMetadataTest {
         .containsExactly(LIBRARY_B, LIBRARY_A);
   }
 
+  @Test
+  void testLoadingOptionalGroupsWorks() throws IOException {
+    final TurnKeyMetadata loaded;
+    try (InputStream inputStream =
+        TurnKeyMetadataTest.class.getResourceAsStream("/test-groups.xml")) {
+      assert inputStream != null;
+      loaded = TurnKeyMetadata.loadFrom(inputStream);
+    }
+
+    assertThat(loaded)
+        .extracting(it -> it.bundledLibraries)
+        .asInstanceOf(COLLECTION)
+        .containsExactly(LIBRARY_A);
+    assertThat(loaded)
+        .extracting(it -> it.optionalGroups)
+        .asInstanceOf(MAP)
+        .containsOnlyKeys(GROUP);
+    assertThat(loaded.optionalGroups.get(GROUP))
+        .extracting(it -> it.bundledLibraries)
+        .asInstanceOf(COLLECTION)
+        .containsExactlyInAnyOrder(LIBRARY_B, LIBRARY_C);
+    assertThat(loaded.optionalGroups.get(GROUP))
+        .extracting(it -> it.loadCommands)
+        .asInstanceOf(LIST)
+        .containsExactly(LIBRARY_C, LIBRARY_B);
+  }
+
+  @Test
+  void testMetadataWithoutGroupsHasNoOptionalGroups() throws IOException {
+    final TurnKeyMetadata loaded;
+    try (InputStream inputStream = TurnKeyMetadataTest.class.getResourceAsStream("/test.xml")) {
+      assert inputStream != null;
+      loaded = TurnKeyMetadata.loadFrom(inputStream);
+    }
+
+    assertThat(loaded.optionalGroups).isEmpty();
+  }
+
   @Test
   void testEqualityAndHashCodeWorks() {
     final TurnKeyMetadata base =
@@ -115,4 +156,31 @@ class TurnKeyMetadataTest {
 
     assertThat(metadataLoaded).containsExactlyInAnyOrderEntriesOf(reference);
   }
+
+  @Test
+  void testStoringOptionalGroupsWorks() throws IOException {
+    final Properties reference;
+    try (InputStream inputStream =
+        TurnKeyMetadataTest.class.getResourceAsStream("/test-groups.xml")) {
+      reference = new Properties();
+      reference.loadFromXML(inputStream);
+    }
+
+    final TurnKeyMetadata metadata =
+        new TurnKeyMetadata(
+            set(LIBRARY_A),
+            set(SYSTEM_LIBRARY_1),
+            list(LIBRARY_A),
+            Collections.singletonMap(
+                GROUP,
+                new TurnKeyMetadata.OptionalGroup(
+                    set(LIBRARY_B, LIBRARY_C), list(LIBRARY_C, LIBRARY_B))));
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    metadata.writeTo(outputStream);
+    final ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    final Properties metadataLoaded = new Properties();
+    metadataLoaded.loadFromXML(inputStream);
+
+    assertThat(metadataLoaded).containsExactlyInAnyOrderEntriesOf(reference);
+  }
 }
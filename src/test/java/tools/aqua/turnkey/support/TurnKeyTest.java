@@ -0,0 +1,270 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2019-2025 The TurnKey Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tools.aqua.turnkey.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.util.Lists.list;
+import static org.assertj.core.util.Sets.set;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+@TestInstance(PER_CLASS)
+class TurnKeyTest {
+
+  private static final String CORE_LIBRARY = "libcore.so";
+  private static final String GROUP_LIBRARY = "libgroup.so";
+  private static final String GROUP = "extra";
+
+  /** A bundle without load commands, so loading it does not link any native code. */
+  private static final class Bundle implements Function<String, @Nullable InputStream> {
+    private final PlatformPrefix prefix;
+    private final byte[] metadata;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    Bundle(final String libraryPrefix) {
+      prefix =
+          new PlatformPrefix(libraryPrefix, OperatingSystem.identify(), CPUArchitecture.identify());
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+        new TurnKeyMetadata(
+                set(CORE_LIBRARY),
+                emptySet(),
+                emptyList(),
+                singletonMap(
+                    GROUP,
+                    new TurnKeyMetadata.OptionalGroup(
+                        set(CORE_LIBRARY, GROUP_LIBRARY), emptyList())))
+            .writeTo(out);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      metadata = out.toByteArray();
+    }
+
+    @Override
+    public @Nullable InputStream apply(final String name) {
+      if (name.equals(prefix.resolve(TurnKey.TURNKEY_FILE_NAME))) {
+        return new ByteArrayInputStream(metadata);
+      }
+      requests.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+      return new ByteArrayInputStream(name.getBytes(UTF_8));
+    }
+
+    int requestsFor(final String file) {
+      final AtomicInteger count = requests.get(prefix.resolve(file));
+      return count == null ? 0 : count.get();
+    }
+  }
+
+  private static Path loadDirectory(final String libraryPrefix) {
+    final ExtractedBundle bundle = TurnKey.getLoadedBundle(libraryPrefix);
+    assertThat(bundle).isNotNull();
+    return bundle.directory;
+  }
+
+  @Test
+  void testLoadGroupBeforeLoadIsRejected() {
+    final Bundle bundle = new Bundle("com/acme/group-before-load");
+
+    assertThatThrownBy(() -> TurnKey.loadGroup("com/acme/group-before-load", GROUP, bundle))
+        .isInstanceOf(TurnkeyException.class)
+        .hasMessageContaining("must be loaded before");
+  }
+
+  @Test
+  void testUnknownGroupIsRejected() {
+    final Bundle bundle = new Bundle("com/acme/unknown-group");
+    TurnKey.load("com/acme/unknown-group", bundle);
+
+    assertThatThrownBy(() -> TurnKey.loadGroup("com/acme/unknown-group", "missing", bundle))
+        .isInstanceOf(UnsupportedPlatformException.class)
+        .hasMessageContaining("missing");
+  }
+
+  @Test
+  void testGroupIsUnpackedIntoTheCoreDirectory() {
+    final Bundle bundle = new Bundle("com/acme/group-directory");
+    TurnKey.load("com/acme/group-directory", bundle);
+
+    TurnKey.loadGroup("com/acme/group-directory", GROUP, bundle);
+
+    final Path directory = loadDirectory("com/acme/group-directory");
+    assertThat(directory.resolve(GROUP_LIBRARY)).hasContent(bundle.prefix.resolve(GROUP_LIBRARY));
+    assertThat(directory.resolve(CORE_LIBRARY)).hasContent(bundle.prefix.resolve(CORE_LIBRARY));
+  }
+
+  @Test
+  void testGroupDoesNotUnpackCoreFilesAgain() {
+    final Bundle bundle = new Bundle("com/acme/group-shared");
+    TurnKey.load("com/acme/group-shared", bundle);
+
+    TurnKey.loadGroup("com/acme/group-shared", GROUP, bundle);
+
+    assertThat(bundle.requestsFor(CORE_LIBRARY)).isEqualTo(1);
+    assertThat(bundle.requestsFor(GROUP_LIBRARY)).isEqualTo(1);
+  }
+
+  @Test
+  void testLoadingAGroupTwiceHasNoEffect() {
+    final Bundle bundle = new Bundle("com/acme/group-twice");
+    TurnKey.load("com/acme/group-twice", bundle);
+
+    TurnKey.loadGroup("com/acme/group-twice", GROUP, bundle);
+    TurnKey.loadGroup("com/acme/group-twice", GROUP, bundle);
+
+    assertThat(bundle.requestsFor(GROUP_LIBRARY)).isEqualTo(1);
+  }
+
+  @Test
+  void testPrewarmedBundleIsHandedToLoad() throws ExecutionException, InterruptedException {
+    final Bundle bundle = new Bundle("com/acme/prewarmed");
+    final PendingExtraction pending = TurnKey.prewarm("com/acme/prewarmed", bundle);
+    assertThat(pending).isNotNull();
+    assertThat(TurnKey.prewarm("com/acme/prewarmed", bundle)).isNull();
+    pending.run();
+
+    TurnKey.load(
+        "com/acme/prewarmed",
+        name -> {
+          throw new AssertionError("Unexpected request for " + name);
+        });
+
+    assertThat(loadDirectory("com/acme/prewarmed")).isEqualTo(pending.get().directory);
+    assertThat(bundle.requestsFor(CORE_LIBRARY)).isEqualTo(1);
+    assertThat(TurnKey.prewarm("com/acme/prewarmed", bundle)).isNull();
+  }
+
+  @Test
+  void testTimedLoadReportsBlockedMetadataRead() {
+    final CountDownLatch release = new CountDownLatch(1);
+    try {
+      assertThatThrownBy(
+              () ->
+                  TurnKey.load(
+                      "com/acme/blocked-metadata",
+                      name -> {
+                        await(release);
+                        return null;
+                      },
+                      100,
+                      MILLISECONDS))
+          .isInstanceOf(TurnkeyException.class)
+          .hasMessageContaining("during metadata read: metadata not yet read");
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  void testTimedLoadDeletesPartialDirectory() throws IOException {
+    final String libraryPrefix = "com/acme/blocked-extraction";
+    final PlatformPrefix prefix =
+        new PlatformPrefix(libraryPrefix, OperatingSystem.identify(), CPUArchitecture.identify());
+    final String metadataFile = prefix.resolve(TurnKey.TURNKEY_FILE_NAME);
+    final ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+    new TurnKeyMetadata(set("liba.so"), emptySet(), list("liba.so")).writeTo(metadata);
+
+    final Set<Path> created = ConcurrentHashMap.newKeySet();
+    final Consumer<ExtractedBundle> listener =
+        TurnKey.EXTRACTION_LISTENER.getAndSet(
+            bundle -> {
+              if (bundle.platformPrefix.resolve(TurnKey.TURNKEY_FILE_NAME).equals(metadataFile)) {
+                created.add(bundle.directory);
+              }
+            });
+    final CountDownLatch release = new CountDownLatch(1);
+    try {
+      assertThatThrownBy(
+              () ->
+                  TurnKey.load(
+                      libraryPrefix,
+                      name ->
+                          name.equals(metadataFile)
+                              ? new ByteArrayInputStream(metadata.toByteArray())
+                              : new BlockingInputStream(release),
+                      500,
+                      MILLISECONDS))
+          .isInstanceOf(TurnkeyException.class)
+          .hasMessageContaining("during extraction: unpacked 0 of 1 files");
+    } finally {
+      release.countDown();
+      TurnKey.EXTRACTION_LISTENER.set(listener);
+    }
+
+    assertThat(created).hasSize(1).allSatisfy(directory -> assertThat(directory).doesNotExist());
+  }
+
+  @SuppressWarnings("PMD.DoNotUseThreads") // keeps the interrupt for the abandoned worker
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Blocks until released or interrupted. */
+  private static final class BlockingInputStream extends InputStream {
+    private final CountDownLatch release;
+
+    BlockingInputStream(final CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      return -1;
+    }
+
+    @Override
+    public int read(final byte @Nullable [] buffer, final int offset, final int length)
+        throws IOException {
+      return read();
+    }
+  }
+}